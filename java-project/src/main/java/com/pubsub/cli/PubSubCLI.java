@@ -1,11 +1,14 @@
 package com.pubsub.cli;
 
-import com.pubsub.config.KafkaConfig;
 import com.pubsub.model.Content;
+import com.pubsub.model.Notification;
 import com.pubsub.model.User;
+import com.pubsub.service.ContentFeed;
 import com.pubsub.service.ContentPublisher;
 import com.pubsub.service.ContentSubscriber;
-import com.pubsub.service.EmailService;
+import com.pubsub.service.EmailDispatcher;
+import com.pubsub.service.NotificationPage;
+import com.pubsub.service.NotificationStore;
 import com.pubsub.service.SubscriptionService;
 import com.pubsub.service.UserService;
 import com.pubsub.util.KeywordExtractor;
@@ -19,6 +22,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class PubSubCLI implements CommandLineRunner {
+    private static final int NOTIFICATION_PAGE_SIZE = 10;
     private final Map<String, ContentSubscriber> subscribers = new ConcurrentHashMap<>();
     private String currentUser;
     private User.UserType currentUserType;
@@ -26,9 +30,10 @@ public class PubSubCLI implements CommandLineRunner {
     private final UserService userService;
     private final ContentPublisher contentPublisher;
     private final SubscriptionService subscriptionService;
-    private final EmailService emailService;
+    private final EmailDispatcher emailDispatcher;
     private final PasswordEncoder passwordEncoder;
-    private final KafkaConfig kafkaConfig;
+    private final ContentFeed contentFeed;
+    private final NotificationStore notificationStore;
     @Autowired
     private KeywordExtractor keywordExtractor;
 
@@ -36,15 +41,17 @@ public class PubSubCLI implements CommandLineRunner {
     public PubSubCLI(UserService userService,
             ContentPublisher contentPublisher,
             SubscriptionService subscriptionService,
-            EmailService emailService,
+            EmailDispatcher emailDispatcher,
             PasswordEncoder passwordEncoder,
-            KafkaConfig kafkaConfig) {
+            ContentFeed contentFeed,
+            NotificationStore notificationStore) {
         this.userService = userService;
         this.contentPublisher = contentPublisher;
         this.subscriptionService = subscriptionService;
-        this.emailService = emailService;
+        this.emailDispatcher = emailDispatcher;
         this.passwordEncoder = passwordEncoder;
-        this.kafkaConfig = kafkaConfig;
+        this.contentFeed = contentFeed;
+        this.notificationStore = notificationStore;
     }
 
     @Override
@@ -95,7 +102,7 @@ public class PubSubCLI implements CommandLineRunner {
                             System.out.println("Déconnexion réussie !");
                             continue;
                         } else {
-                            viewNotifications();
+                            viewNotifications(scanner);
                         }
                         break;
                     case "5":
@@ -182,7 +189,7 @@ public class PubSubCLI implements CommandLineRunner {
 
                 if (currentUserType == User.UserType.SUBSCRIBER && !subscribers.containsKey(currentUser)) {
                     subscribers.put(currentUser,
-                            new ContentSubscriber(currentUser, subscriptionService, emailService, userService, kafkaConfig));
+                            new ContentSubscriber(currentUser, subscriptionService, emailDispatcher, userService, contentFeed));
                 }
 
                 System.out.println("Connexion réussie !");
@@ -246,7 +253,7 @@ public class PubSubCLI implements CommandLineRunner {
 
             if (currentUserType == User.UserType.SUBSCRIBER) {
                 subscribers.put(currentUser,
-                        new ContentSubscriber(currentUser, subscriptionService, emailService, userService, kafkaConfig));
+                        new ContentSubscriber(currentUser, subscriptionService, emailDispatcher, userService, contentFeed));
             }
         } catch (Exception e) {
             System.out.println("Échec de l'inscription : " + e.getMessage());
@@ -486,11 +493,10 @@ public class PubSubCLI implements CommandLineRunner {
         }
     }
 
-    private void viewNotifications() {
-        ContentSubscriber subscriber = subscribers.get(currentUser);
-        Map<String, List<Content>> notifications = subscriber.getNotifications();
+    private void viewNotifications(Scanner scanner) {
+        NotificationPage page = notificationStore.readPage(currentUser, null, NOTIFICATION_PAGE_SIZE);
 
-        if (notifications.isEmpty()) {
+        if (page.isEmpty()) {
             System.out.println("Aucune notification trouvée.");
             return;
         }
@@ -498,21 +504,34 @@ public class PubSubCLI implements CommandLineRunner {
         System.out.println("\nVos notifications :");
         System.out.println("====================================");
 
-        for (Map.Entry<String, List<Content>> entry : notifications.entrySet()) {
-            String keyword = entry.getKey();
-            List<Content> contents = entry.getValue();
-
-            System.out.println("\nNotifications pour le mot-clé '" + keyword + "':");
-            System.out.println("------------------------------------");
-
-            for (Content content : contents) {
-                System.out.println("\nTitre : " + content.getTitle());
-                System.out.println(" : " + content.getPublisherId());
-                System.out.println("Contenu : " + content.getBody());
-                System.out.println("Mots-clés : " + String.join(", ", content.getKeywords()));
-                System.out.println("Publié le : " + content.getCreatedAt());
+        while (true) {
+            for (Notification notification : page.getNotifications()) {
+                Content content = page.getContent(notification);
+                System.out.println("\nMots-clés correspondants : " + String.join(", ", notification.getKeywords()));
+                System.out.println("Reçue le : " + notification.getCreatedAt());
+                if (content == null) {
+                    System.out.println("Ce contenu a été supprimé.");
+                } else {
+                    System.out.println("Titre : " + content.getTitle());
+                    System.out.println(" : " + content.getPublisherId());
+                    System.out.println("Contenu : " + content.getBody());
+                    System.out.println("Mots-clés : " + String.join(", ", content.getKeywords()));
+                    System.out.println("Publié le : " + content.getCreatedAt());
+                }
                 System.out.println("------------------------------------");
             }
+
+            if (page.getNextCursor() == null) {
+                return;
+            }
+            System.out.print("\nAfficher les notifications suivantes ? (o/n) : ");
+            if (!scanner.nextLine().trim().toLowerCase().equals("o")) {
+                return;
+            }
+            page = notificationStore.readPage(currentUser, page.getNextCursor(), NOTIFICATION_PAGE_SIZE);
+            if (page.isEmpty()) {
+                return;
+            }
         }
     }
 
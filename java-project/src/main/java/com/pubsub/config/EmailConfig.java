@@ -1,11 +1,12 @@
 package com.pubsub.config;
 
+import com.pubsub.service.OutboundMailQueue;
+import com.pubsub.service.SmtpTransportPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.retry.annotation.EnableRetry;
 
@@ -38,6 +39,42 @@ public class EmailConfig {
     @Value("${spring.mail.properties.mail.smtp.writetimeout:5000}")
     private int writeTimeout;
 
+    @Value("${app.email.pool.size:4}")
+    private int poolSize;
+
+    @Value("${app.email.pool.max-idle-ms:60000}")
+    private long poolMaxIdleMs;
+
+    @Value("${app.email.pool.max-messages-per-connection:100}")
+    private int poolMaxMessagesPerConnection;
+
+    @Value("${app.email.queue.capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${app.email.queue.senders:4}")
+    private int queueSenders;
+
+    @Value("${app.email.rate.domain-per-second:5}")
+    private double domainRate;
+
+    @Value("${app.email.rate.domain-burst:10}")
+    private int domainBurst;
+
+    @Value("${app.email.rate.relay-per-second:20}")
+    private double relayRate;
+
+    @Value("${app.email.rate.relay-burst:20}")
+    private int relayBurst;
+
+    @Value("${app.email.retry.max-attempts:5}")
+    private int retryMaxAttempts;
+
+    @Value("${app.email.retry.initial-backoff-ms:2000}")
+    private long retryInitialBackoffMs;
+
+    @Value("${app.email.retry.max-backoff-ms:300000}")
+    private long retryMaxBackoffMs;
+
     @PostConstruct
     public void init() {
         logger.info("Initializing Email Configuration");
@@ -50,7 +87,7 @@ public class EmailConfig {
     }
 
     @Bean
-    public JavaMailSender javaMailSender() {
+    public JavaMailSenderImpl javaMailSender() {
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
         mailSender.setHost(host);
         mailSender.setPort(port);
@@ -69,4 +106,16 @@ public class EmailConfig {
         
         return mailSender;
     }
+
+    @Bean
+    public SmtpTransportPool smtpTransportPool(JavaMailSenderImpl javaMailSender) {
+        return new SmtpTransportPool(javaMailSender, poolSize, poolMaxIdleMs, poolMaxMessagesPerConnection);
+    }
+
+    @Bean
+    public OutboundMailQueue outboundMailQueue(SmtpTransportPool smtpTransportPool) {
+        return new OutboundMailQueue(smtpTransportPool, queueCapacity, queueSenders,
+                domainRate, domainBurst, relayRate, relayBurst,
+                retryMaxAttempts, retryInitialBackoffMs, retryMaxBackoffMs);
+    }
 }
@@ -28,12 +28,25 @@ public class KafkaConfig {
     @Value("${spring.kafka.producer.retries:3}")
     private int producerRetries;
 
+    @Value("${spring.kafka.producer.batch-size:65536}")
+    private int producerBatchSize;
+
+    @Value("${spring.kafka.producer.properties.linger.ms:5}")
+    private int producerLingerMs;
+
+    @Value("${app.routing.mode:broadcast}")
+    private String routingMode;
+
+    @Value("${app.routing.shards:12}")
+    private int shardCount;
+
     @Value("${spring.kafka.consumer.auto-offset-reset:earliest}")
     private String autoOffsetReset;
 
     private final String contentTopic = "content-topic";
     private final String notificationTopic = "notification-topic";
     private final String emailTopic = "email-topic";
+    private final String contentShardsTopic = "content-shards-topic";
 
     public String getContentTopic() {
         return contentTopic;
@@ -47,6 +60,21 @@ public class KafkaConfig {
         return emailTopic;
     }
 
+    public String getContentShardsTopic() {
+        return contentShardsTopic;
+    }
+
+    public int getShardCount() {
+        return Math.max(1, shardCount);
+    }
+
+    /**
+     * True when content is also routed to the keyword shards and nodes read only those.
+     */
+    public boolean isShardedRouting() {
+        return "sharded".equalsIgnoreCase(routingMode);
+    }
+
     @PostConstruct
     public void init() {
         logger.info("********************************************************");
@@ -55,6 +83,7 @@ public class KafkaConfig {
         logger.info("Content Topic: {}", contentTopic);
         logger.info("Notification Topic: {}", notificationTopic);
         logger.info("Email Topic: {}", emailTopic);
+        logger.info("Content routing: {} ({} shards on {})", routingMode, getShardCount(), contentShardsTopic);
         logger.info("********************************************************");
         
         verifyKafkaConnection();
@@ -84,6 +113,14 @@ public class KafkaConfig {
                 .build();
     }
 
+    @Bean
+    public NewTopic contentShardsTopic() {
+        return TopicBuilder.name(contentShardsTopic)
+                .partitions(getShardCount())
+                .replicas(1)
+                .build();
+    }
+
     private void verifyKafkaConnection() {
         Properties props = new Properties();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
@@ -114,18 +151,24 @@ public class KafkaConfig {
         props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, "20000");
         props.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, "1000");
         props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, producerBatchSize);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, producerLingerMs);
         logger.info("Producer configuration complete with acks=all and retries={}", producerRetries);
         return props;
     }
 
     public Properties getConsumerProps(String groupId) {
+        return getConsumerProps(groupId, autoOffsetReset);
+    }
+
+    public Properties getConsumerProps(String groupId, String offsetReset) {
         logger.info("Creating new Kafka consumer connection. Group: {}, Servers: {}", groupId, bootstrapServers);
         Properties props = new Properties();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, autoOffsetReset);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, offsetReset);
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, "30000");
         props.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, "10000");
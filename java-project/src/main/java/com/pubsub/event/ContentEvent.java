@@ -0,0 +1,131 @@
+package com.pubsub.event;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.pubsub.model.Content;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable content as carried on the content topic. Unlike the {@link Content}
+ * entity, building one does not generate an id or a timestamp. In claim-check
+ * mode the body is left out and must be read from the store by content id.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class ContentEvent {
+    private final String id;
+    private final String title;
+    private final String body;
+    private final Set<String> keywords;
+    private final String publisherId;
+    private final Instant createdAt;
+    private final boolean bodyOmitted;
+
+    public ContentEvent(String id, String title, String body, Collection<String> keywords,
+                        String publisherId, Instant createdAt) {
+        this(id, title, body, keywords, publisherId, createdAt, false);
+    }
+
+    @JsonCreator
+    public ContentEvent(@JsonProperty("id") String id,
+                        @JsonProperty("title") String title,
+                        @JsonProperty("body") String body,
+                        @JsonProperty("keywords") Collection<String> keywords,
+                        @JsonProperty("publisherId") String publisherId,
+                        @JsonProperty("createdAt") Instant createdAt,
+                        @JsonProperty("bodyOmitted") boolean bodyOmitted) {
+        this.id = id;
+        this.title = title;
+        this.body = body;
+        this.keywords = keywords == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(keywords));
+        this.publisherId = publisherId;
+        this.createdAt = createdAt;
+        this.bodyOmitted = bodyOmitted;
+    }
+
+    public static ContentEvent from(Content content) {
+        return new ContentEvent(content.getId(), content.getTitle(), content.getBody(), content.getKeywords(),
+                content.getPublisherId(), content.getCreatedAt());
+    }
+
+    /**
+     * Returns the same event without its body, to be read from the store instead.
+     */
+    public ContentEvent withoutBody() {
+        return bodyOmitted ? this : new ContentEvent(id, title, null, keywords, publisherId, createdAt, true);
+    }
+
+    /**
+     * Builds the entity; its body is null when the event left it out.
+     */
+    public Content toContent() {
+        return new Content(id, title, body, keywords != null ? keywords : Collections.emptySet(), publisherId, createdAt);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public Set<String> getKeywords() {
+        return keywords;
+    }
+
+    public String getPublisherId() {
+        return publisherId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isBodyOmitted() {
+        return bodyOmitted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ContentEvent that = (ContentEvent) o;
+        return Objects.equals(id, that.id)
+                && Objects.equals(title, that.title)
+                && Objects.equals(body, that.body)
+                && Objects.equals(keywords, that.keywords)
+                && Objects.equals(publisherId, that.publisherId)
+                && Objects.equals(createdAt, that.createdAt)
+                && bodyOmitted == that.bodyOmitted;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, body, keywords, publisherId, createdAt, bodyOmitted);
+    }
+
+    @Override
+    public String toString() {
+        return "ContentEvent{" +
+                "id='" + id + '\'' +
+                ", title='" + title + '\'' +
+                ", keywords=" + keywords +
+                ", publisherId='" + publisherId + '\'' +
+                ", createdAt=" + createdAt +
+                (bodyOmitted ? ", bodyOmitted=true" : "") +
+                '}';
+    }
+}
@@ -0,0 +1,349 @@
+package com.pubsub.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes {@link ContentEvent}s in the compact binary format of the content topic,
+ * or in the legacy JSON format. Decoding detects the format from the first byte,
+ * so records written before the binary format was introduced are still read.
+ *
+ * Binary layout (version 1): magic {@code 0xCE}, version, flags, then the id (16
+ * bytes if it is a lowercase UUID, otherwise a string), the creation time as
+ * zigzag varlong seconds and varint nanoseconds, title, body, publisher id and
+ * the keywords (varint count then strings). Strings are a varint of the UTF-8
+ * length plus one, 0 standing for null, followed by the bytes. A flag marks
+ * events whose body was left out (claim check); their body is written as null.
+ * Decoding checks every length and count against the bytes left, so a corrupt
+ * record fails with an {@link IllegalArgumentException} instead of allocating
+ * according to garbage.
+ */
+public final class ContentEventCodec {
+    public static final byte MAGIC = (byte) 0xCE;
+    public static final byte VERSION = 1;
+
+    private static final int FLAG_UUID_ID = 1;
+    private static final int FLAG_CREATED_AT = 1 << 1;
+    private static final int FLAG_BODY_OMITTED = 1 << 2;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ObjectMapper objectMapper;
+
+    public enum Format {
+        JSON, BINARY;
+
+        public static Format parse(String value) {
+            return value == null || value.isBlank() ? BINARY : Format.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    public ContentEventCodec() {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    public byte[] encode(ContentEvent event, Format format) {
+        return format == Format.JSON ? encodeJson(event) : encodeBinary(event);
+    }
+
+    public byte[] encodeJson(ContentEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize content " + event.getId(), e);
+        }
+    }
+
+    public byte[] encodeBinary(ContentEvent event) {
+        String id = event.getId();
+        boolean uuidId = isLowercaseUuid(id);
+        byte[] idBytes = uuidId ? null : utf8(id);
+        byte[] title = utf8(event.getTitle());
+        byte[] body = event.isBodyOmitted() ? null : utf8(event.getBody());
+        byte[] publisherId = utf8(event.getPublisherId());
+        List<byte[]> keywords = null;
+        if (event.getKeywords() != null) {
+            keywords = new ArrayList<>(event.getKeywords().size());
+            for (String keyword : event.getKeywords()) {
+                keywords.add(utf8(keyword));
+            }
+        }
+        Instant createdAt = event.getCreatedAt();
+
+        // Taille exacte calculée d'avance : un seul tableau, sans recopie
+        int size = 3 + (uuidId ? 16 : stringSize(idBytes))
+                + stringSize(title) + stringSize(body) + stringSize(publisherId)
+                + varintSize(keywords == null ? 0 : keywords.size() + 1);
+        if (createdAt != null) {
+            size += varlongSize(zigzag(createdAt.getEpochSecond())) + varintSize(createdAt.getNano());
+        }
+        if (keywords != null) {
+            for (byte[] keyword : keywords) {
+                size += stringSize(keyword);
+            }
+        }
+
+        Output out = new Output(size);
+        out.buffer[out.position++] = MAGIC;
+        out.buffer[out.position++] = VERSION;
+        out.buffer[out.position++] = (byte) ((uuidId ? FLAG_UUID_ID : 0) | (createdAt != null ? FLAG_CREATED_AT : 0)
+                | (event.isBodyOmitted() ? FLAG_BODY_OMITTED : 0));
+        if (uuidId) {
+            out.writeUuid(id);
+        } else {
+            out.writeString(idBytes);
+        }
+        if (createdAt != null) {
+            out.writeVarlong(zigzag(createdAt.getEpochSecond()));
+            out.writeVarint(createdAt.getNano());
+        }
+        out.writeString(title);
+        out.writeString(body);
+        out.writeString(publisherId);
+        out.writeVarint(keywords == null ? 0 : keywords.size() + 1);
+        if (keywords != null) {
+            for (byte[] keyword : keywords) {
+                out.writeString(keyword);
+            }
+        }
+        return out.buffer;
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    /**
+     * Decodes a binary or legacy JSON record. Returns null for a null record.
+     */
+    public ContentEvent decode(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (!isBinary(data)) {
+            try {
+                return objectMapper.readValue(data, ContentEvent.class);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid content event: " + e.getMessage(), e);
+            }
+        }
+        return decodeBinary(data);
+    }
+
+    private static ContentEvent decodeBinary(byte[] data) {
+        Input in = new Input(data);
+        in.position = 1;
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported content event version " + version);
+        }
+        int flags = in.readByte();
+        String id = (flags & FLAG_UUID_ID) != 0 ? in.readUuid() : in.readString();
+        Instant createdAt = null;
+        if ((flags & FLAG_CREATED_AT) != 0) {
+            long seconds = unzigzag(in.readVarlong());
+            createdAt = Instant.ofEpochSecond(seconds, in.readVarint());
+        }
+        String title = in.readString();
+        String body = in.readString();
+        String publisherId = in.readString();
+        int keywordCount = in.readVarint();
+        // Chaque mot-clé occupe au moins un octet
+        if (keywordCount < 0 || keywordCount - 1 > in.remaining()) {
+            throw new IllegalArgumentException("Invalid keyword count in content event");
+        }
+        List<String> keywords = null;
+        if (keywordCount > 0) {
+            keywords = new ArrayList<>(keywordCount - 1);
+            for (int i = 0; i < keywordCount - 1; i++) {
+                keywords.add(in.readString());
+            }
+        }
+        return new ContentEvent(id, title, body, keywords, publisherId, createdAt, (flags & FLAG_BODY_OMITTED) != 0);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return bytes == null ? 1 : varintSize(bytes.length + 1) + bytes.length;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int varlongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static boolean isLowercaseUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Output {
+        private final byte[] buffer;
+        private int position;
+
+        private Output(int size) {
+            this.buffer = new byte[size];
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeVarlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeString(byte[] bytes) {
+            if (bytes == null) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint(bytes.length + 1);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeUuid(String id) {
+            int high = -1;
+            for (int i = 0; i < id.length(); i++) {
+                char c = id.charAt(i);
+                if (c == '-') {
+                    continue;
+                }
+                int nibble = Character.digit(c, 16);
+                if (high < 0) {
+                    high = nibble;
+                } else {
+                    buffer[position++] = (byte) ((high << 4) | nibble);
+                    high = -1;
+                }
+            }
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buffer;
+        private int position;
+
+        private Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private int remaining() {
+            return buffer.length - position;
+        }
+
+        private int readByte() {
+            if (position >= buffer.length) {
+                throw new IllegalArgumentException("Truncated content event");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in content event");
+        }
+
+        private long readVarlong() {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varlong in content event");
+        }
+
+        private String readString() {
+            int encoded = readVarint();
+            if (encoded == 0) {
+                return null;
+            }
+            int length = encoded - 1;
+            if (length < 0 || length > remaining()) {
+                throw new IllegalArgumentException("Truncated content event");
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private String readUuid() {
+            if (buffer.length - position < 16) {
+                throw new IllegalArgumentException("Truncated content event");
+            }
+            char[] chars = new char[36];
+            int c = 0;
+            for (int i = 0; i < 16; i++) {
+                if (i == 4 || i == 6 || i == 8 || i == 10) {
+                    chars[c++] = '-';
+                }
+                int b = buffer[position++] & 0xFF;
+                chars[c++] = HEX[b >>> 4];
+                chars[c++] = HEX[b & 0x0F];
+            }
+            return new String(chars);
+        }
+    }
+}
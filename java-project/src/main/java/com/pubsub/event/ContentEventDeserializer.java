@@ -0,0 +1,27 @@
+package com.pubsub.event;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Kafka deserializer reading binary and legacy JSON {@link ContentEvent}s. An
+ * undecodable record is logged and returned as null rather than thrown, so it
+ * cannot block the partition it was read from.
+ */
+public class ContentEventDeserializer implements Deserializer<ContentEvent> {
+    private static final Logger logger = LoggerFactory.getLogger(ContentEventDeserializer.class);
+
+    private final ContentEventCodec codec = new ContentEventCodec();
+
+    @Override
+    public ContentEvent deserialize(String topic, byte[] data) {
+        try {
+            return codec.decode(data);
+        } catch (RuntimeException e) {
+            logger.error("Skipping undecodable content event on {} ({} bytes): {}",
+                    topic, data.length, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.pubsub.event;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Map;
+
+/**
+ * Kafka serializer writing {@link ContentEvent}s in the configured wire format,
+ * binary unless {@value #FORMAT_CONFIG} is set to {@code json}.
+ */
+public class ContentEventSerializer implements Serializer<ContentEvent> {
+    public static final String FORMAT_CONFIG = "content.event.format";
+
+    private final ContentEventCodec codec = new ContentEventCodec();
+    private ContentEventCodec.Format format;
+
+    public ContentEventSerializer() {
+        this(ContentEventCodec.Format.BINARY);
+    }
+
+    public ContentEventSerializer(ContentEventCodec.Format format) {
+        this.format = format;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object configured = configs.get(FORMAT_CONFIG);
+        if (configured != null) {
+            format = ContentEventCodec.Format.parse(configured.toString());
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, ContentEvent event) {
+        return event == null ? null : codec.encode(event, format);
+    }
+}
@@ -0,0 +1,132 @@
+package com.pubsub.matching;
+
+import java.util.*;
+
+/**
+ * Immutable Aho-Corasick automaton over a fixed set of lowercase patterns.
+ * A scan reports every pattern occurring as a substring of the text in a single
+ * pass, lowercasing characters on the fly instead of copying the text, as
+ * {@link String#toLowerCase()} would.
+ */
+public final class AhoCorasick {
+    private final String[] patterns;
+    // Transitions de chaque noeud, triées par caractère
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    // Motif se terminant sur le noeud (-1 si aucun) et prochain noeud terminal dans la chaîne d'échec
+    private final int[] output;
+    private final int[] dictLink;
+
+    public AhoCorasick(Collection<String> patterns) {
+        this.patterns = patterns.toArray(new String[0]);
+
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        children.add(new TreeMap<>());
+        terminal.add(-1);
+
+        for (int p = 0; p < this.patterns.length; p++) {
+            String pattern = this.patterns[p];
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    terminal.add(-1);
+                    children.get(node).put(c, next);
+                }
+                node = next;
+            }
+            if (!pattern.isEmpty()) {
+                terminal.set(node, p);
+            }
+        }
+
+        int size = children.size();
+        keys = new char[size][];
+        targets = new int[size][];
+        output = new int[size];
+        for (int n = 0; n < size; n++) {
+            TreeMap<Character, Integer> map = children.get(n);
+            keys[n] = new char[map.size()];
+            targets[n] = new int[map.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : map.entrySet()) {
+                keys[n][i] = entry.getKey();
+                targets[n][i] = entry.getValue();
+                i++;
+            }
+            output[n] = terminal.get(n);
+        }
+
+        fail = new int[size];
+        dictLink = new int[size];
+        Arrays.fill(dictLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < keys[node].length; i++) {
+                char c = keys[node][i];
+                int child = targets[node][i];
+                int f = fail[node];
+                int next;
+                while ((next = transition(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next < 0 ? 0 : next;
+                int link = fail[child];
+                dictLink[child] = output[link] >= 0 ? link : dictLink[link];
+                queue.add(child);
+            }
+        }
+    }
+
+    private int transition(int node, char c) {
+        char[] k = keys[node];
+        int idx = Arrays.binarySearch(k, c);
+        return idx >= 0 ? targets[node][idx] : -1;
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    public String getPattern(int id) {
+        return patterns[id];
+    }
+
+    /**
+     * Marks in {@code found} the id of every pattern contained in the lowercased text.
+     */
+    public void scan(CharSequence text, BitSet found) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\u0130') {
+                // Comme String.toLowerCase() : I pointé devient i suivi du point suscrit
+                node = step(step(node, 'i', found), '\u0307', found);
+            } else {
+                node = step(node, Character.toLowerCase(c), found);
+            }
+        }
+    }
+
+    private int step(int node, char c, BitSet found) {
+        int next;
+        while ((next = transition(node, c)) < 0 && node != 0) {
+            node = fail[node];
+        }
+        node = next < 0 ? 0 : next;
+
+        for (int n = output[node] >= 0 ? node : dictLink[node]; n >= 0; n = dictLink[n]) {
+            found.set(output[n]);
+        }
+        return node;
+    }
+}
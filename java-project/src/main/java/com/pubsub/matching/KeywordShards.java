@@ -0,0 +1,53 @@
+package com.pubsub.matching;
+
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Maps keywords to the partitions of the content shards topic. A content is routed
+ * to the shard of every word of its keywords, and a subscription is read from the
+ * shard of the first word of its phrase, so a node only needs the shards of its
+ * sessions' keywords. This only finds content whose keywords contain that word
+ * exactly: the substring and title or body matching of {@link SubscriptionIndex}
+ * is lost for content routed this way. The hash (murmur2, as Kafka's partitioner)
+ * is stable across nodes and restarts.
+ */
+public final class KeywordShards {
+    private KeywordShards() {
+    }
+
+    public static int shardOf(String word, int shardCount) {
+        return Utils.toPositive(Utils.murmur2(word.getBytes(StandardCharsets.UTF_8))) % shardCount;
+    }
+
+    /**
+     * Shards a content with these keywords is published to.
+     */
+    public static Set<Integer> shardsOfContent(Collection<String> keywords, int shardCount) {
+        Set<Integer> shards = new TreeSet<>();
+        if (keywords == null) {
+            return shards;
+        }
+        for (String keyword : keywords) {
+            String normalized = SubscriptionIndex.normalize(keyword);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            for (String word : normalized.split("\\s+")) {
+                shards.add(shardOf(word, shardCount));
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Shard holding every content whose keywords contain all the words of the phrase.
+     */
+    public static int shardOfSubscription(String keyword, int shardCount) {
+        return shardOf(SubscriptionIndex.normalize(keyword).split("\\s+")[0], shardCount);
+    }
+}
@@ -0,0 +1,249 @@
+package com.pubsub.matching;
+
+import com.pubsub.model.Content;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from keyword part to the subscription phrases that contain it.
+ * All distinct parts are compiled into an {@link AhoCorasick} automaton, so each
+ * field of a content is scanned once for every subscription, and a single match
+ * yields every (subscriber, keyword) pair at once.
+ *
+ * A phrase matches when each of its whitespace-separated parts is a substring of
+ * the same field: one of the content keywords, the title or the body.
+ */
+public class SubscriptionIndex {
+    private final Map<String, Phrase> phrases = new HashMap<>();
+    private final Map<String, List<Phrase>> byPart = new HashMap<>();
+    private final Map<String, Set<String>> bySubscriber = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Recompilé paresseusement lorsque l'ensemble des parties change
+    private AhoCorasick automaton;
+
+    private static final class Phrase {
+        private final String keyword;
+        private final String[] parts;
+        private final Set<String> subscribers = new HashSet<>();
+
+        private Phrase(String keyword, String[] parts) {
+            this.keyword = keyword;
+            this.parts = parts;
+        }
+    }
+
+    public void add(String subscriberId, String keyword) {
+        String normalized = normalize(keyword);
+        if (normalized.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Phrase phrase = phrases.get(normalized);
+            if (phrase == null) {
+                phrase = new Phrase(normalized, split(normalized));
+                phrases.put(normalized, phrase);
+                for (String part : phrase.parts) {
+                    List<Phrase> list = byPart.get(part);
+                    if (list == null) {
+                        list = new ArrayList<>(1);
+                        byPart.put(part, list);
+                        automaton = null;
+                    }
+                    list.add(phrase);
+                }
+            }
+            phrase.subscribers.add(subscriberId);
+            bySubscriber.computeIfAbsent(subscriberId, s -> new HashSet<>()).add(normalized);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(String subscriberId, Collection<String> keywords) {
+        for (String keyword : keywords) {
+            add(subscriberId, keyword);
+        }
+    }
+
+    public void remove(String subscriberId, String keyword) {
+        String normalized = normalize(keyword);
+
+        lock.writeLock().lock();
+        try {
+            Set<String> keywords = bySubscriber.get(subscriberId);
+            if (keywords == null || !keywords.remove(normalized)) {
+                return;
+            }
+            if (keywords.isEmpty()) {
+                bySubscriber.remove(subscriberId);
+            }
+            detach(subscriberId, normalized);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeSubscriber(String subscriberId) {
+        lock.writeLock().lock();
+        try {
+            Set<String> keywords = bySubscriber.remove(subscriberId);
+            if (keywords != null) {
+                for (String keyword : keywords) {
+                    detach(subscriberId, keyword);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void detach(String subscriberId, String keyword) {
+        Phrase phrase = phrases.get(keyword);
+        if (phrase == null) {
+            return;
+        }
+        phrase.subscribers.remove(subscriberId);
+        if (!phrase.subscribers.isEmpty()) {
+            return;
+        }
+        phrases.remove(keyword);
+        for (String part : phrase.parts) {
+            List<Phrase> list = byPart.get(part);
+            if (list != null) {
+                list.remove(phrase);
+                if (list.isEmpty()) {
+                    byPart.remove(part);
+                    automaton = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the matched keywords of each subscriber whose subscriptions match the content.
+     */
+    public Map<String, Set<String>> match(Content content) {
+        if (content == null) {
+            return Collections.emptyMap();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (phrases.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            AhoCorasick compiled = compiledAutomaton();
+
+            Set<Phrase> matched = new HashSet<>();
+            BitSet found = new BitSet(compiled.getPatternCount());
+            if (content.getKeywords() != null) {
+                for (String contentKeyword : content.getKeywords()) {
+                    collectMatches(compiled, contentKeyword, found, matched);
+                }
+            }
+            collectMatches(compiled, content.getTitle(), found, matched);
+            collectMatches(compiled, content.getBody(), found, matched);
+
+            Map<String, Set<String>> result = new HashMap<>();
+            for (Phrase phrase : matched) {
+                for (String subscriberId : phrase.subscribers) {
+                    result.computeIfAbsent(subscriberId, s -> new HashSet<>()).add(phrase.keyword);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called with the read lock held; compiles the automaton if the parts changed.
+     */
+    private AhoCorasick compiledAutomaton() {
+        AhoCorasick compiled = automaton;
+        if (compiled != null) {
+            return compiled;
+        }
+
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            if (automaton == null) {
+                automaton = new AhoCorasick(byPart.keySet());
+            }
+            compiled = automaton;
+            // Rétrogradation vers le verrou de lecture avant de libérer l'écriture
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return compiled;
+    }
+
+    private void collectMatches(AhoCorasick compiled, String field, BitSet found, Set<Phrase> matched) {
+        if (field == null || field.isEmpty()) {
+            return;
+        }
+
+        found.clear();
+        compiled.scan(field, found);
+        if (found.isEmpty()) {
+            return;
+        }
+
+        Map<Phrase, Integer> hits = new HashMap<>();
+        for (int id = found.nextSetBit(0); id >= 0; id = found.nextSetBit(id + 1)) {
+            List<Phrase> candidates = byPart.get(compiled.getPattern(id));
+            if (candidates == null) {
+                continue;
+            }
+            for (Phrase phrase : candidates) {
+                int count = phrase.parts.length == 1 ? 1 : hits.merge(phrase, 1, Integer::sum);
+                if (count == phrase.parts.length) {
+                    matched.add(phrase);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the indexed keywords, normalized.
+     */
+    public Set<String> getKeywords() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(phrases.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getPhraseCount() {
+        lock.readLock().lock();
+        try {
+            return phrases.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getSubscriberCount() {
+        lock.readLock().lock();
+        try {
+            return bySubscriber.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static String normalize(String keyword) {
+        return keyword == null ? "" : keyword.trim().toLowerCase();
+    }
+
+    private static String[] split(String normalized) {
+        return new LinkedHashSet<>(Arrays.asList(normalized.split("\\s+"))).toArray(new String[0]);
+    }
+}
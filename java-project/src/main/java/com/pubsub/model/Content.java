@@ -1,5 +1,8 @@
 package com.pubsub.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.domain.Persistable;
+
 import javax.persistence.*;
 import java.time.Instant;
 import java.util.HashSet;
@@ -12,9 +15,9 @@ import java.util.UUID;
     @Index(name = "idx_content_created", columnList = "createdAt")
 })
 @Cacheable
-public class Content {
+public class Content implements Persistable<String> {
     @Id
-    private String id = UUID.randomUUID().toString();
+    private String id;
     
     @Column(nullable = false, length = 255)
     private String title;
@@ -38,7 +41,12 @@ public class Content {
     @Column(nullable = false)
     private Instant createdAt;
 
+    // L'id est attribué à la création : sans ce drapeau, save() ferait un merge (SELECT puis INSERT)
+    @Transient
+    private boolean isNew = true;
+
     public Content(String title, String body, Set<String> keywords, String publisherId) {
+        this.id = UUID.randomUUID().toString();
         this.title = title;
         this.body = body;
         this.keywords = new HashSet<>(keywords);
@@ -46,6 +54,16 @@ public class Content {
         this.createdAt = Instant.now();
     }
     
+    // Contenu déjà identifié et daté (événement reçu de Kafka) : rien n'est généré
+    public Content(String id, String title, String body, Set<String> keywords, String publisherId, Instant createdAt) {
+        this.id = id;
+        this.title = title;
+        this.body = body;
+        this.keywords = new HashSet<>(keywords);
+        this.publisherId = publisherId;
+        this.createdAt = createdAt;
+    }
+
     //constructeur pour deserialisation json
     public Content() {
         this.id = UUID.randomUUID().toString();
@@ -69,6 +87,18 @@ public class Content {
     public String getPublisherId() {
         return publisherId;
     }
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
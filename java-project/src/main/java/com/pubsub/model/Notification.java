@@ -0,0 +1,79 @@
+package com.pubsub.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+@Entity
+@Table(name = "notifications", indexes = {
+    @Index(name = "idx_notification_subscriber", columnList = "subscriberId, id")
+}, uniqueConstraints = {
+    // Un contenu déjà notifié (flux puis rattrapage après un arrêt brutal) n'est pas enregistré deux fois
+    @UniqueConstraint(name = "uk_notification_subscriber_content", columnNames = {"subscriberId", "contentId"})
+})
+public class Notification {
+    // Séquence allouée par blocs pour permettre les insertions JDBC par lots
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_seq")
+    @SequenceGenerator(name = "notification_seq", sequenceName = "notification_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String subscriberId;
+
+    @Column(nullable = false)
+    private String contentId;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(
+        name = "notification_keywords",
+        joinColumns = @JoinColumn(name = "notification_id")
+    )
+    @Column(name = "keyword", length = 100)
+    private Set<String> keywords;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    protected Notification() {}
+
+    public Notification(String subscriberId, String contentId, Set<String> keywords) {
+        this.subscriberId = subscriberId;
+        this.contentId = contentId;
+        this.keywords = new LinkedHashSet<>(keywords);
+        this.createdAt = Instant.now();
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getSubscriberId() {
+        return subscriberId;
+    }
+
+    public String getContentId() {
+        return contentId;
+    }
+
+    public Set<String> getKeywords() {
+        return new LinkedHashSet<>(keywords);
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "Notification{" +
+                "id=" + id +
+                ", subscriberId='" + subscriberId + '\'' +
+                ", contentId='" + contentId + '\'' +
+                ", keywords=" + keywords +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
@@ -0,0 +1,82 @@
+package com.pubsub.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Record waiting to be sent to Kafka, written in the same transaction as the
+ * content it describes and deleted by the relay once the broker acknowledged it.
+ * A record that can never be sent (unreadable payload, rejected by the producer)
+ * is marked failed and kept for inspection instead of blocking the outbox.
+ */
+@Entity
+@Table(name = "content_outbox")
+public class OutboxEvent {
+    // Séquence allouée par blocs : l'ordre des ids est l'ordre d'envoi
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_seq")
+    @SequenceGenerator(name = "outbox_seq", sequenceName = "outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String topic;
+
+    @Column(nullable = false)
+    private String aggregateId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    @Lob
+    private String payload;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // Renseignés quand le relais abandonne l'événement
+    private Instant failedAt;
+
+    @Column(length = 1000)
+    private String failureReason;
+
+    protected OutboxEvent() {}
+
+    public OutboxEvent(String topic, String aggregateId, String payload) {
+        this.topic = topic;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = Instant.now();
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getFailedAt() {
+        return failedAt;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public void markFailed(String reason) {
+        this.failedAt = Instant.now();
+        this.failureReason = reason != null && reason.length() > 1000 ? reason.substring(0, 1000) : reason;
+    }
+}
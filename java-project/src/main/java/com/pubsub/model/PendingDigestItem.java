@@ -0,0 +1,75 @@
+package com.pubsub.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+@Entity
+@Table(name = "pending_digest_items", indexes = {
+    @Index(name = "idx_digest_recipient", columnList = "recipient")
+})
+public class PendingDigestItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pending_digest_seq")
+    @SequenceGenerator(name = "pending_digest_seq", sequenceName = "pending_digest_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String contentId;
+
+    @Column(nullable = false, length = 500)
+    private String keywords;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    protected PendingDigestItem() {}
+
+    public PendingDigestItem(String recipient, String contentId, Set<String> keywords) {
+        this.recipient = recipient;
+        this.contentId = contentId;
+        this.keywords = String.join(",", keywords);
+        this.createdAt = Instant.now();
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getContentId() {
+        return contentId;
+    }
+
+    public Set<String> getKeywords() {
+        // Un ensemble vide est stocké comme une chaîne vide
+        if (keywords.isBlank()) {
+            return new LinkedHashSet<>();
+        }
+        return new LinkedHashSet<>(Arrays.asList(keywords.split(",")));
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "PendingDigestItem{" +
+                "id=" + id +
+                ", recipient='" + recipient + '\'' +
+                ", contentId='" + contentId + '\'' +
+                ", keywords='" + keywords + '\'' +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
@@ -34,6 +34,9 @@ public class User {
     @Column(nullable = false)
     private Instant lastUpdatedAt;
 
+    @Column
+    private Instant lastSeenAt;
+
     public enum UserType {
         PUBLISHER("Publisher"),
         SUBSCRIBER("Subscriber");
@@ -91,6 +94,10 @@ public class User {
         return lastUpdatedAt;
     }
 
+    public Instant getLastSeenAt() {
+        return lastSeenAt;
+    }
+
     // Setters
     public void setUsername(String username) {
         this.username = username;
@@ -112,6 +119,10 @@ public class User {
         this.lastUpdatedAt = Instant.now();
     }
 
+    public void setLastSeenAt(Instant lastSeenAt) {
+        this.lastSeenAt = lastSeenAt;
+    }
+
     @PreUpdate
     protected void onUpdate() {
         lastUpdatedAt = Instant.now();
@@ -140,6 +151,7 @@ public class User {
                 ", password='" + password + '\'' +
                 ", createdAt=" + createdAt +
                 ", lastUpdatedAt=" + lastUpdatedAt +
+                ", lastSeenAt=" + lastSeenAt +
                 '}';
     }
 }
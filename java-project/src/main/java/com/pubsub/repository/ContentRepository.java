@@ -1,13 +1,34 @@
 package com.pubsub.repository;
 
 import com.pubsub.model.Content;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ContentRepository extends JpaRepository<Content, String> {
     List<Content> findByPublisherId(String publisherId);
     List<Content> findByKeywordsContaining(String keyword);
     void deleteByPublisherId(String publisherId);
+
+    // Lecture du corps seul, pour les événements publiés sans corps
+    @Query("SELECT c.body FROM Content c WHERE c.id = :id")
+    Optional<String> findBodyById(@Param("id") String id);
+
+    // Utilise idx_content_created et idx_content_keyword pour le rattrapage des abonnés ;
+    // les plus récents d'abord, pour que la limite écarte les plus anciens
+    @Query("SELECT DISTINCT c FROM Content c JOIN c.keywords k " +
+           "WHERE c.createdAt > :since AND c.createdAt <= :until AND k IN :keywords " +
+           "ORDER BY c.createdAt DESC")
+    List<Content> findByKeywordsCreatedBetween(@Param("since") Instant since,
+                                               @Param("until") Instant until,
+                                               @Param("keywords") Collection<String> keywords,
+                                               Pageable pageable);
 }
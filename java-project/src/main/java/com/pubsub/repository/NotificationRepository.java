@@ -0,0 +1,14 @@
+package com.pubsub.repository;
+
+import com.pubsub.model.Notification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+    List<Notification> findBySubscriberIdOrderByIdDesc(String subscriberId, Pageable pageable);
+    List<Notification> findBySubscriberIdAndIdLessThanOrderByIdDesc(String subscriberId, Long cursor, Pageable pageable);
+}
@@ -0,0 +1,14 @@
+package com.pubsub.repository;
+
+import com.pubsub.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    // Événements encore à envoyer, hors ceux abandonnés par le relais
+    List<OutboxEvent> findAllByFailedAtIsNullOrderByIdAsc(Pageable pageable);
+}
@@ -0,0 +1,9 @@
+package com.pubsub.repository;
+
+import com.pubsub.model.PendingDigestItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PendingDigestItemRepository extends JpaRepository<PendingDigestItem, Long> {
+}
@@ -2,8 +2,12 @@ package com.pubsub.repository;
 
 import com.pubsub.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +16,8 @@ public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    @Modifying
+    @Query("UPDATE User u SET u.lastSeenAt = :seenAt WHERE u.username = :username")
+    int updateLastSeenAt(@Param("username") String username, @Param("seenAt") Instant seenAt);
 }
@@ -0,0 +1,108 @@
+package com.pubsub.service;
+
+import com.pubsub.event.ContentEvent;
+import com.pubsub.repository.ContentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Claim check for content bodies. When {@code app.content.claim-check.enabled} is
+ * set, events whose body is at least {@code app.content.claim-check.min-body-length}
+ * characters are published without it: the content id is the reference, and
+ * consumers read the body from the database only when they need it, through a
+ * small LRU cache. Every node must then share the publishers' database.
+ */
+@Service
+public class ContentBodyStore {
+    private static final Logger logger = LoggerFactory.getLogger(ContentBodyStore.class);
+
+    private final ContentRepository contentRepository;
+    private final boolean enabled;
+    private final int minBodyLength;
+    private final boolean matchBody;
+    private final int cacheSize;
+    private final Map<String, String> bodies;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public ContentBodyStore(ContentRepository contentRepository,
+                            @Value("${app.content.claim-check.enabled:false}") boolean enabled,
+                            @Value("${app.content.claim-check.min-body-length:2048}") int minBodyLength,
+                            @Value("${app.content.claim-check.match-body:true}") boolean matchBody,
+                            @Value("${app.content.claim-check.cache-size:256}") int cacheSize) {
+        this.contentRepository = contentRepository;
+        this.enabled = enabled;
+        this.minBodyLength = Math.max(0, minBodyLength);
+        this.matchBody = matchBody;
+        this.cacheSize = Math.max(1, cacheSize);
+        this.bodies = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > ContentBodyStore.this.cacheSize;
+            }
+        });
+        if (enabled) {
+            logger.info("Claim check enabled for bodies of {}+ characters, body matching {}",
+                    this.minBodyLength, matchBody ? "on" : "off");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether subscriptions are also matched against bodies left out of the events.
+     * When off, title and keywords decide and the body is only read for delivery.
+     */
+    public boolean isMatchBody() {
+        return matchBody;
+    }
+
+    /**
+     * Returns the event to put on the wire: without its body if it is long enough.
+     */
+    public ContentEvent toWire(ContentEvent event) {
+        if (!enabled || event.getBody() == null || event.getBody().length() < minBodyLength) {
+            return event;
+        }
+        return event.withoutBody();
+    }
+
+    /**
+     * Returns the body of the content, or null if it no longer exists.
+     */
+    public String load(String contentId) {
+        String body = bodies.get(contentId);
+        if (body != null) {
+            hits.incrementAndGet();
+            return body;
+        }
+        misses.incrementAndGet();
+        // Lecture hors du verrou du cache : les workers ne s'attendent pas entre eux
+        body = contentRepository.findBodyById(contentId).orElse(null);
+        if (body != null) {
+            bodies.put(contentId, body);
+        } else {
+            logger.debug("No body found for content {}", contentId);
+        }
+        return body;
+    }
+
+    public long getCacheHits() {
+        return hits.get();
+    }
+
+    public long getCacheMisses() {
+        return misses.get();
+    }
+}
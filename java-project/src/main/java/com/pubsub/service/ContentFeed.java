@@ -0,0 +1,582 @@
+package com.pubsub.service;
+
+import com.pubsub.config.KafkaConfig;
+import com.pubsub.event.ContentEvent;
+import com.pubsub.event.ContentEventDeserializer;
+import com.pubsub.matching.KeywordShards;
+import com.pubsub.matching.SubscriptionIndex;
+import com.pubsub.model.Content;
+import com.pubsub.repository.ContentRepository;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single Kafka consumer shared by every {@link ContentSubscriber} session of this JVM.
+ * Each record is deserialized and matched once against the {@link SubscriptionIndex}
+ * of all registered sessions, then handed in memory to the sessions it matched,
+ * so broker traffic does not grow with the number of logged-in subscribers.
+ *
+ * Records are processed by a pool of single-threaded worker lanes. A record is
+ * always routed to the same lane for its partition (or key, when
+ * {@code app.consumer.ordering=key}), which preserves ordering, and the consumer
+ * pauses its partitions while too many records are waiting for a worker.
+ *
+ * The consumer group is stable per node ({@code app.node.id}) and offsets are
+ * committed asynchronously in batches once the records before them have been
+ * processed, so a restart resumes where the node stopped instead of replaying
+ * the topic. Content published while a subscriber was away is loaded from the
+ * database when its session registers, rather than replayed from Kafka. Every
+     * delivered notification is also recorded in the {@link NotificationStore},
+ * which stores a content once per subscriber: catch-up after an unclean stop,
+ * when the last-seen time was not saved, does not record it again.
+ *
+ * With {@code app.routing.mode=sharded}, the node does not read the whole content
+ * topic: it assigns itself only the partitions of the keyword shard topic that
+ * hold the words of its subscriptions, and reassigns them when subscriptions
+ * change. Content is published to the shard of each of its keyword words, so
+ * copies received from several shards are delivered once. Matching is narrower
+ * than in broadcast mode: only content whose extracted keywords contain the first
+ * word of a subscription exactly reaches the node, so a subscription to "learn"
+ * no longer matches "learning", and matches on the title or body alone are not
+ * routed. A warning is logged at startup. Shard records are references without
+ * the body, which is read from the database as for the claim check below, so
+ * every node must share the publishers' database.
+ *
+ * Events published without their body (claim check, see {@link ContentBodyStore})
+ * are first matched on their keywords and title. The body is read from the store
+ * only when a session matched, to deliver it, or when some subscriptions are
+ * still unmatched and could match the body.
+ */
+@Service
+public class ContentFeed implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ContentFeed.class);
+    private static final int RECENT_CONTENT_IDS = 10000;
+    // Marge de relecture d'un shard nouvellement assigné, avant la demande qui l'a ajouté
+    private static final long SHARD_LOOKBACK_MS = 5000;
+    private final KafkaConfig kafkaConfig;
+    private final ContentRepository contentRepository;
+    private final NotificationStore notificationStore;
+    private final ContentBodyStore contentBodies;
+    private final Map<String, ContentSubscriber> sessions;
+    private final SubscriptionIndex subscriptionIndex;
+    private final ExecutorService consumerThread;
+    private final ExecutorService[] workers;
+    private final boolean orderByKey;
+    private final int maxPending;
+    private final AtomicInteger pending;
+    private final String groupId;
+    private final String offsetReset;
+    private final long commitIntervalMs;
+    private final Map<TopicPartition, PartitionOffsets> offsets;
+    private final int catchUpLimit;
+    private final boolean sharded;
+    // Contenus déjà traités, une même publication arrivant par plusieurs shards
+    private final Map<String, Boolean> recentContentIds;
+    private volatile boolean assignmentDirty;
+    // Plus ancienne demande de réassignation non traitée (ms), Long.MAX_VALUE si aucune
+    private final AtomicLong assignmentRequestedAt = new AtomicLong(Long.MAX_VALUE);
+    private long lastCommitTime;
+    private KafkaConsumer<String, ContentEvent> consumer;
+    private volatile boolean isActive;
+    private boolean started;
+    private boolean paused;
+
+    @Autowired
+    public ContentFeed(KafkaConfig kafkaConfig,
+                       ContentRepository contentRepository,
+                       NotificationStore notificationStore,
+                       ContentBodyStore contentBodies,
+                       @Value("${app.consumer.workers:0}") int workerCount,
+                       @Value("${app.consumer.ordering:partition}") String ordering,
+                       @Value("${app.consumer.max-pending:1000}") int maxPending,
+                       @Value("${app.node.id:}") String nodeId,
+                       @Value("${app.consumer.auto-offset-reset:latest}") String offsetReset,
+                       @Value("${app.consumer.commit-interval-ms:1000}") long commitIntervalMs,
+                       @Value("${app.subscriber.catch-up-limit:200}") int catchUpLimit) {
+        this.kafkaConfig = kafkaConfig;
+        this.contentRepository = contentRepository;
+        this.notificationStore = notificationStore;
+        this.contentBodies = contentBodies;
+        this.sessions = new ConcurrentHashMap<>();
+        this.subscriptionIndex = new SubscriptionIndex();
+        this.consumerThread = Executors.newSingleThreadExecutor();
+        this.orderByKey = "key".equalsIgnoreCase(ordering);
+        this.maxPending = Math.max(1, maxPending);
+        this.pending = new AtomicInteger();
+        this.groupId = "content-feed-" + (nodeId == null || nodeId.isBlank() ? resolveNodeId() : nodeId);
+        this.offsetReset = offsetReset;
+        this.commitIntervalMs = commitIntervalMs;
+        this.offsets = new ConcurrentHashMap<>();
+        this.catchUpLimit = catchUpLimit;
+        this.sharded = kafkaConfig.isShardedRouting();
+        this.recentContentIds = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > RECENT_CONTENT_IDS;
+            }
+        });
+
+        int lanes = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        this.workers = new ExecutorService[lanes];
+        for (int i = 0; i < lanes; i++) {
+            workers[i] = Executors.newSingleThreadExecutor();
+        }
+        this.isActive = true;
+        logger.info("ContentFeed configured with {} workers, ordered by {}, max {} pending records",
+                lanes, orderByKey ? "key" : "partition", this.maxPending);
+        if (sharded) {
+            logger.warn("Sharded routing: a subscription only matches content whose extracted keywords contain its "
+                    + "first word exactly; partial words (\"learn\" in \"learning\") and matches on the title or body "
+                    + "alone are not delivered. Use app.routing.mode=broadcast for full matching");
+        }
+    }
+
+    public void register(ContentSubscriber subscriber, Collection<String> keywords) {
+        subscriptionIndex.addAll(subscriber.getUsername(), keywords);
+        sessions.put(subscriber.getUsername(), subscriber);
+        requestAssignment();
+        startIfNeeded();
+        logger.info("Session registered for user: {} ({} active sessions)", subscriber.getUsername(), sessions.size());
+    }
+
+    /**
+     * Registers the session for live delivery, then delivers the matching content
+     * published between {@code since} and {@code until} from the database. The
+     * session discards whichever copy of a boundary record arrives second.
+     *
+     * Catch-up only finds content through its extracted keywords
+     * ({@code content_keywords}), since scanning every title and body in the
+     * database would not scale; content that live delivery would have matched on
+     * its title or body alone is not caught up. At most
+     * {@code app.subscriber.catch-up-limit} items are delivered, the most recent
+     * ones, oldest first; a limit of 0 disables catch-up.
+     */
+    public void register(ContentSubscriber subscriber, Collection<String> keywords, Instant since, Instant until) {
+        register(subscriber, keywords);
+        if (since != null && !keywords.isEmpty() && catchUpLimit > 0) {
+            catchUp(subscriber, keywords, since, until);
+        }
+    }
+
+    private void catchUp(ContentSubscriber subscriber, Collection<String> keywords, Instant since, Instant until) {
+        try {
+            SubscriptionIndex ownIndex = new SubscriptionIndex();
+            ownIndex.addAll(subscriber.getUsername(), keywords);
+
+            // Les mots-clés extraits sont des mots simples : chercher les expressions et leurs parties
+            Set<String> terms = new HashSet<>();
+            for (String keyword : keywords) {
+                String normalized = keyword.trim().toLowerCase();
+                terms.add(normalized);
+                terms.addAll(Arrays.asList(normalized.split("\\s+")));
+            }
+
+            List<Content> candidates = new ArrayList<>(contentRepository.findByKeywordsCreatedBetween(
+                    since, until, terms, PageRequest.of(0, catchUpLimit)));
+            if (candidates.size() == catchUpLimit) {
+                logger.warn("Catch-up for {} limited to the {} most recent matching contents",
+                        subscriber.getUsername(), catchUpLimit);
+            }
+            // Requête du plus récent au plus ancien : livrer dans l'ordre de publication
+            Collections.reverse(candidates);
+            int delivered = 0;
+            for (Content content : candidates) {
+                Set<String> matched = ownIndex.match(content).get(subscriber.getUsername());
+                if (matched != null && subscriber.onCatchUp(content, matched)) {
+                    notificationStore.enqueue(subscriber.getUsername(), content, matched);
+                    delivered++;
+                }
+            }
+            logger.info("Catch-up for {} since {}: {} of {} candidates delivered",
+                    subscriber.getUsername(), since, delivered, candidates.size());
+        } catch (Exception e) {
+            logger.error("Error during catch-up for {}: {}", subscriber.getUsername(), e.getMessage(), e);
+        }
+    }
+
+    public void unregister(ContentSubscriber subscriber) {
+        if (sessions.remove(subscriber.getUsername(), subscriber)) {
+            subscriptionIndex.removeSubscriber(subscriber.getUsername());
+            requestAssignment();
+            logger.info("Session unregistered for user: {} ({} active sessions)", subscriber.getUsername(), sessions.size());
+        }
+    }
+
+    public void addKeyword(String username, String keyword) {
+        subscriptionIndex.add(username, keyword);
+        requestAssignment();
+    }
+
+    public void removeKeyword(String username, String keyword) {
+        subscriptionIndex.remove(username, keyword);
+        requestAssignment();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private synchronized void startIfNeeded() {
+        if (started || !isActive) {
+            return;
+        }
+        started = true;
+
+        // Le désérialiseur lit le format binaire comme l'ancien JSON
+        consumer = new KafkaConsumer<>(kafkaConfig.getConsumerProps(groupId, offsetReset),
+                new StringDeserializer(), new ContentEventDeserializer());
+        if (sharded) {
+            // Partitions assignées par le thread de poll selon les abonnements
+            logger.info("Shared consumer reading the shards of {} with group {}",
+                    kafkaConfig.getContentShardsTopic(), groupId);
+            consumerThread.submit(this::pollLoop);
+            return;
+        }
+        consumer.subscribe(Arrays.asList(kafkaConfig.getContentTopic(), kafkaConfig.getNotificationTopic()),
+                new ConsumerRebalanceListener() {
+                    @Override
+                    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                        commitOffsets(true);
+                        offsets.keySet().removeAll(partitions);
+                    }
+
+                    @Override
+                    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                        logger.info("Partitions assigned to {}: {}", groupId, partitions);
+                    }
+                });
+        logger.info("Shared consumer subscribed to topics: {}, {} with group {}",
+                kafkaConfig.getContentTopic(), kafkaConfig.getNotificationTopic(), groupId);
+
+        consumerThread.submit(this::pollLoop);
+    }
+
+    private void pollLoop() {
+        try {
+            while (isActive) {
+                if (sharded) {
+                    if (assignmentDirty) {
+                        reassign();
+                    }
+                    if (consumer.assignment().isEmpty()) {
+                        Thread.sleep(100);
+                        continue;
+                    }
+                }
+                applyBackpressure();
+                ConsumerRecords<String, ContentEvent> records = consumer.poll(Duration.ofMillis(100));
+                for (ConsumerRecord<String, ContentEvent> record : records) {
+                    PartitionOffsets partitionOffsets = offsets.computeIfAbsent(
+                            new TopicPartition(record.topic(), record.partition()), tp -> new PartitionOffsets());
+                    partitionOffsets.dispatched(record.offset());
+                    pending.incrementAndGet();
+                    workers[laneFor(record)].execute(() -> process(record, partitionOffsets));
+                }
+                if (System.currentTimeMillis() - lastCommitTime >= commitIntervalMs) {
+                    commitOffsets(false);
+                }
+            }
+        } catch (WakeupException e) {
+            // Attendu lors de la fermeture
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Error in shared consumer thread: {}", e.getMessage(), e);
+        } finally {
+            try {
+                // Terminer les enregistrements en cours avant le dernier commit
+                for (ExecutorService worker : workers) {
+                    shutdown(worker);
+                }
+                commitOffsets(true);
+            } catch (Exception e) {
+                logger.error("Error committing final offsets: {}", e.getMessage(), e);
+            }
+            try {
+                consumer.close();
+                logger.info("Shared Kafka consumer closed successfully");
+            } catch (Exception e) {
+                logger.error("Error closing consumer: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void requestAssignment() {
+        assignmentRequestedAt.accumulateAndGet(System.currentTimeMillis(), Math::min);
+        assignmentDirty = true;
+    }
+
+    /**
+     * Assigns the shard partitions of the words currently subscribed to, after
+     * committing what was processed on the partitions being dropped. A partition
+     * that is added starts from the records published shortly before the
+     * subscription change that required it, not from the group's committed
+     * offset: that offset dates from the last time the node read the shard,
+     * possibly long ago, and older content is caught up from the database. Must be
+     * called from the poll thread.
+     */
+    private void reassign() {
+        assignmentDirty = false;
+        long requestedAt = assignmentRequestedAt.getAndSet(Long.MAX_VALUE);
+        Set<TopicPartition> wanted = new HashSet<>();
+        for (String keyword : subscriptionIndex.getKeywords()) {
+            wanted.add(new TopicPartition(kafkaConfig.getContentShardsTopic(),
+                    KeywordShards.shardOfSubscription(keyword, kafkaConfig.getShardCount())));
+        }
+        Set<TopicPartition> current = consumer.assignment();
+        if (wanted.equals(current)) {
+            return;
+        }
+
+        Set<TopicPartition> dropped = new HashSet<>(current);
+        dropped.removeAll(wanted);
+        if (!dropped.isEmpty()) {
+            commitOffsets(true);
+            offsets.keySet().removeAll(dropped);
+        }
+        Set<TopicPartition> added = new HashSet<>(wanted);
+        added.removeAll(current);
+        consumer.assign(wanted);
+        if (!added.isEmpty()) {
+            seekToRecent(added, requestedAt == Long.MAX_VALUE ? System.currentTimeMillis() : requestedAt);
+        }
+        if (paused) {
+            consumer.pause(wanted);
+        }
+        logger.info("Shard partitions assigned to {}: {}", groupId, wanted);
+    }
+
+    private void seekToRecent(Set<TopicPartition> partitions, long requestedAt) {
+        Map<TopicPartition, Long> timestamps = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            timestamps.put(partition, requestedAt - SHARD_LOOKBACK_MS);
+        }
+        Set<TopicPartition> atEnd = new HashSet<>();
+        for (Map.Entry<TopicPartition, OffsetAndTimestamp> entry : consumer.offsetsForTimes(timestamps).entrySet()) {
+            if (entry.getValue() == null) {
+                // Rien de publié depuis : reprendre à la fin
+                atEnd.add(entry.getKey());
+            } else {
+                consumer.seek(entry.getKey(), entry.getValue().offset());
+            }
+        }
+        if (!atEnd.isEmpty()) {
+            consumer.seekToEnd(atEnd);
+        }
+    }
+
+    /**
+     * Pauses every assigned partition while workers lag behind, and resumes them
+     * once the backlog has drained to half of the limit.
+     */
+    private void applyBackpressure() {
+        int backlog = pending.get();
+        if (backlog >= maxPending) {
+            if (!paused) {
+                logger.warn("Workers falling behind ({} pending records), pausing consumption", backlog);
+                paused = true;
+            }
+            // Couvre aussi les partitions assignées après un rééquilibrage
+            consumer.pause(consumer.assignment());
+        } else if (paused && backlog <= maxPending / 2) {
+            consumer.resume(consumer.paused());
+            paused = false;
+            logger.info("Backlog drained ({} pending records), resuming consumption", backlog);
+        }
+    }
+
+    private int laneFor(ConsumerRecord<String, ContentEvent> record) {
+        int hash = orderByKey && record.key() != null
+                ? record.key().hashCode()
+                : Objects.hash(record.topic(), record.partition());
+        return Math.floorMod(hash, workers.length);
+    }
+
+    /**
+     * Commits, for every partition, the offset following the last record processed
+     * without gaps. Must be called from the poll thread.
+     */
+    private void commitOffsets(boolean sync) {
+        lastCommitTime = System.currentTimeMillis();
+        Map<TopicPartition, OffsetAndMetadata> toCommit = new HashMap<>();
+        for (Map.Entry<TopicPartition, PartitionOffsets> entry : offsets.entrySet()) {
+            long position = entry.getValue().committable();
+            if (position > entry.getValue().lastCommitted) {
+                toCommit.put(entry.getKey(), new OffsetAndMetadata(position));
+            }
+        }
+        if (toCommit.isEmpty()) {
+            return;
+        }
+
+        if (sync) {
+            consumer.commitSync(toCommit);
+            markCommitted(toCommit);
+        } else {
+            consumer.commitAsync(toCommit, (committed, e) -> {
+                if (e != null) {
+                    logger.warn("Offset commit failed for group {}: {}", groupId, e.getMessage());
+                } else {
+                    markCommitted(committed);
+                }
+            });
+        }
+    }
+
+    private void markCommitted(Map<TopicPartition, OffsetAndMetadata> committed) {
+        for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committed.entrySet()) {
+            PartitionOffsets partitionOffsets = offsets.get(entry.getKey());
+            if (partitionOffsets != null) {
+                partitionOffsets.lastCommitted = Math.max(partitionOffsets.lastCommitted, entry.getValue().offset());
+            }
+        }
+        logger.debug("Committed offsets for group {}: {}", groupId, committed);
+    }
+
+    private static String resolveNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "local";
+        }
+    }
+
+    /**
+     * Offsets of one partition still being processed by the workers.
+     */
+    private static final class PartitionOffsets {
+        private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+        private volatile long lastDispatched = -1;
+        private volatile long lastCommitted = -1;
+
+        void dispatched(long offset) {
+            inFlight.add(offset);
+            lastDispatched = offset;
+        }
+
+        void completed(long offset) {
+            inFlight.remove(offset);
+        }
+
+        long committable() {
+            long next = lastDispatched + 1;
+            try {
+                return inFlight.isEmpty() ? next : inFlight.first();
+            } catch (NoSuchElementException e) {
+                return next;
+            }
+        }
+    }
+
+    private void process(ConsumerRecord<String, ContentEvent> record, PartitionOffsets partitionOffsets) {
+        try {
+            // null : enregistrement illisible, déjà signalé par le désérialiseur
+            if (record.value() != null && (!sharded || firstSeen(record.value().getId()))) {
+                dispatch(record.value());
+            }
+        } catch (Exception e) {
+            logger.error("Error processing message at {}-{}@{}: {}",
+                    record.topic(), record.partition(), record.offset(), e.getMessage(), e);
+        } finally {
+            partitionOffsets.completed(record.offset());
+            pending.decrementAndGet();
+        }
+    }
+
+    private boolean firstSeen(String contentId) {
+        return contentId == null || recentContentIds.putIfAbsent(contentId, Boolean.TRUE) == null;
+    }
+
+    private void dispatch(ContentEvent event) {
+        Content content = event.toContent();
+        Map<String, Set<String>> matches = subscriptionIndex.match(content);
+        if (event.isBodyOmitted()) {
+            boolean undecided = contentBodies.isMatchBody() && matchedPhraseCount(matches) < subscriptionIndex.getPhraseCount();
+            if (matches.isEmpty() && !undecided) {
+                return;
+            }
+            String body = contentBodies.load(content.getId());
+            if (body == null) {
+                logger.debug("Content {} deleted before delivery, skipped", content.getId());
+                return;
+            }
+            content.setBody(body);
+            if (undecided) {
+                matches = subscriptionIndex.match(content);
+            }
+        }
+        for (Map.Entry<String, Set<String>> match : matches.entrySet()) {
+            ContentSubscriber subscriber = sessions.get(match.getKey());
+            if (subscriber == null) {
+                continue;
+            }
+            try {
+                if (subscriber.onContent(content, match.getValue())) {
+                    notificationStore.enqueue(subscriber.getUsername(), content, match.getValue());
+                    logger.info("Delivered content '{}' to {} for keywords {}",
+                            content.getTitle(), subscriber.getUsername(), match.getValue());
+                }
+            } catch (Exception e) {
+                logger.error("Error delivering content to {}: {}", subscriber.getUsername(), e.getMessage(), e);
+            }
+        }
+        logger.debug("Dispatched content '{}' to {} matching sessions", content.getTitle(), matches.size());
+    }
+
+    private static int matchedPhraseCount(Map<String, Set<String>> matches) {
+        Set<String> phrases = new HashSet<>();
+        for (Set<String> keywords : matches.values()) {
+            phrases.addAll(keywords);
+        }
+        return phrases.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!isActive) {
+            return;
+        }
+        isActive = false;
+        if (consumer != null) {
+            consumer.wakeup();
+        }
+        shutdown(consumerThread);
+        for (ExecutorService worker : workers) {
+            shutdown(worker);
+        }
+        logger.info("ContentFeed closed");
+    }
+
+    private void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
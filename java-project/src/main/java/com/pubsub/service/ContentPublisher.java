@@ -1,39 +1,79 @@
 package com.pubsub.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.pubsub.config.KafkaConfig;
+import com.pubsub.event.ContentEvent;
+import com.pubsub.event.ContentEventCodec;
+import com.pubsub.event.ContentEventSerializer;
+import com.pubsub.matching.KeywordShards;
 import com.pubsub.model.Content;
+import com.pubsub.model.OutboxEvent;
 import com.pubsub.repository.ContentRepository;
+import com.pubsub.repository.OutboxEventRepository;
+import com.pubsub.util.DocumentFrequencyStore;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
 
 @Service
 public class ContentPublisher implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(ContentPublisher.class);
-    private final KafkaProducer<String, String> producer;
-    private final ObjectMapper objectMapper;
+    private final KafkaProducer<String, ContentEvent> producer;
+    private final ContentEventCodec codec;
     private final ContentRepository contentRepository;
     private final KafkaConfig kafkaConfig;
-    private boolean isActive;
+    private final OutboxEventRepository outboxRepository;
+    private final OutboxRelay outboxRelay;
+    private final ContentBodyStore contentBodies;
+    private final DocumentFrequencyStore documentFrequencies;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    // Écritures en base des publications asynchrones et limite des publications en cours
+    private final ExecutorService persistenceExecutor;
+    private final Semaphore inFlight;
+    private volatile boolean isActive;
 
     @Autowired
-    public ContentPublisher(ContentRepository contentRepository, KafkaConfig kafkaConfig) {
+    public ContentPublisher(ContentRepository contentRepository,
+                            KafkaConfig kafkaConfig,
+                            OutboxEventRepository outboxRepository,
+                            OutboxRelay outboxRelay,
+                            ContentBodyStore contentBodies,
+                            DocumentFrequencyStore documentFrequencies,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.publisher.async-threads:2}") int asyncThreads,
+                            @Value("${app.publisher.max-in-flight:1000}") int maxInFlight,
+                            @Value("${app.publisher.batch-size:500}") int batchSize,
+                            @Value("${app.content.wire-format:binary}") String wireFormat) {
         this.kafkaConfig = kafkaConfig;
-        this.producer = new KafkaProducer<>(kafkaConfig.getProducerProps());
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this.outboxRepository = outboxRepository;
+        this.outboxRelay = outboxRelay;
+        this.contentBodies = contentBodies;
+        this.documentFrequencies = documentFrequencies;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.producer = new KafkaProducer<>(kafkaConfig.getProducerProps(), new StringSerializer(),
+                new ContentEventSerializer(ContentEventCodec.Format.parse(wireFormat)));
+        this.codec = new ContentEventCodec();
         this.contentRepository = contentRepository;
+        this.persistenceExecutor = Executors.newFixedThreadPool(Math.max(1, asyncThreads));
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
         this.isActive = true;
         
-        logger.info("ContentPublisher initialized with Kafka producer");
+        logger.info("ContentPublisher initialized with Kafka producer{}",
+                outboxRelay.isEnabled() ? " and transactional outbox" : "");
     }
 
     public void publish(Content content) {
@@ -42,20 +82,246 @@ public class ContentPublisher implements AutoCloseable {
         }
 
         try {
-            // Sauvegarder dans la base de données
-            Content savedContent = contentRepository.save(content);
-            logger.info("Contenue sauvegardée avec ID: {}", savedContent.getId());
-
-            // Publier vers Kafka
-            String contentJson = objectMapper.writeValueAsString(savedContent);
-            producer.send(new ProducerRecord<>(kafkaConfig.getContentTopic(), savedContent.getId(), contentJson));
-            logger.info("Contenue publiée vers Kafka: {}", savedContent.getTitle());
+            // Sauvegarder dans la base de données puis publier vers Kafka
+            saveAndPublish(Collections.singletonList(content)).get(0).whenComplete((result, e) -> {
+                if (e != null) {
+                    logger.error("Failed to send content {} to Kafka: {}", content.getId(), e.getMessage(), e);
+                }
+            });
+            logger.info("Contenue sauvegardée avec ID: {}", content.getId());
+            logger.info("Contenue publiée vers Kafka: {}", content.getTitle());
         } catch (Exception e) {
             logger.error("Error publishing content: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to publish content", e);
         }
     }
 
+    /**
+     * Saves and publishes the content without waiting. The future completes once
+     * Kafka has acknowledged the record, or exceptionally if the save or the send
+     * failed. Database writes run on the publisher's own threads while earlier
+     * records are still being sent, so one caller can keep many publishes in
+     * flight; it waits only when {@code app.publisher.max-in-flight} is reached.
+     * Dependent stages added without an executor run on the Kafka producer's I/O
+     * thread and must not block.
+     */
+    public CompletableFuture<PublishResult> publishAsync(Content content) {
+        if (!isActive) {
+            return CompletableFuture.failedFuture(new IllegalStateException("ContentPublisher is closed"));
+        }
+        if (content == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Content is required"));
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<PublishResult> result;
+        try {
+            result = CompletableFuture
+                    .supplyAsync(() -> saveAndPublish(Collections.singletonList(content)).get(0), persistenceExecutor)
+                    .thenCompose(future -> future);
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(new IllegalStateException("ContentPublisher is closed", e));
+        }
+        result.whenComplete((published, e) -> {
+            inFlight.release();
+            if (e != null) {
+                logger.error("Error publishing content {}: {}", content.getId(), e.getMessage());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Publishes many contents at once. They are saved in chunks of
+     * {@code app.publisher.batch-size}, one transaction and a few JDBC batches per
+     * chunk, and each chunk's records are sent (or handed to the outbox relay) as
+     * soon as it is committed; acks are
+     * only awaited once everything has been sent. If a chunk cannot be saved, its
+     * contents are saved one by one so that only the faulty ones fail. Returns one
+     * result per content, in iteration order.
+     */
+    public List<PublishResult> publishAll(Collection<Content> contents) {
+        List<Content> items = new ArrayList<>(contents);
+        if (!isActive) {
+            List<PublishResult> results = new ArrayList<>(items.size());
+            for (Content content : items) {
+                results.add(PublishResult.failed(content != null ? content.getId() : null,
+                        new IllegalStateException("ContentPublisher is closed")));
+            }
+            return results;
+        }
+
+        List<CompletableFuture<PublishResult>> futures = new ArrayList<>(items.size());
+        for (int start = 0; start < items.size(); start += batchSize) {
+            futures.addAll(saveAndSend(items.subList(start, Math.min(items.size(), start + batchSize))));
+        }
+
+        List<PublishResult> results = new ArrayList<>(items.size());
+        int published = 0;
+        for (int i = 0; i < items.size(); i++) {
+            String contentId = items.get(i) != null ? items.get(i).getId() : null;
+            try {
+                results.add(futures.get(i).get());
+                published++;
+            } catch (ExecutionException e) {
+                results.add(PublishResult.failed(contentId, e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(PublishResult.failed(contentId, e));
+            }
+        }
+        logger.info("Published {} of {} contents", published, items.size());
+        return results;
+    }
+
+    private List<CompletableFuture<PublishResult>> saveAndSend(List<Content> chunk) {
+        List<CompletableFuture<PublishResult>> futures = new ArrayList<>(chunk.size());
+        List<Content> valid = new ArrayList<>(chunk.size());
+        for (Content content : chunk) {
+            if (content != null) {
+                valid.add(content);
+            }
+        }
+
+        List<CompletableFuture<PublishResult>> published;
+        try {
+            published = saveAndPublish(valid);
+        } catch (RuntimeException e) {
+            logger.warn("Batch save of {} contents failed, saving them one by one: {}", valid.size(), e.getMessage());
+            for (Content content : chunk) {
+                futures.add(content == null ? nullContent() : saveOneAndPublish(content));
+            }
+            return futures;
+        }
+
+        Iterator<CompletableFuture<PublishResult>> next = published.iterator();
+        for (Content content : chunk) {
+            futures.add(content == null ? nullContent() : next.next());
+        }
+        return futures;
+    }
+
+    private CompletableFuture<PublishResult> saveOneAndPublish(Content content) {
+        try {
+            return saveAndPublish(Collections.singletonList(content)).get(0);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Saves the contents in one transaction and returns their publish futures, in
+     * order. Without the outbox, records are sent once the transaction committed.
+     * With the outbox, the events are written in the same transaction and the
+     * relay sends them. Throws if the transaction fails.
+     */
+    private List<CompletableFuture<PublishResult>> saveAndPublish(List<Content> contents) {
+        if (!outboxRelay.isEnabled()) {
+            List<Content> saved = transactionTemplate.execute(status -> contentRepository.saveAll(contents));
+            recordDocuments(saved);
+            List<CompletableFuture<PublishResult>> futures = new ArrayList<>(saved.size());
+            for (Content content : saved) {
+                futures.add(send(content));
+            }
+            return futures;
+        }
+
+        List<OutboxEvent> events = new ArrayList<>(contents.size());
+        try {
+            List<CompletableFuture<PublishResult>> futures = transactionTemplate.execute(status -> {
+                List<Content> saved = contentRepository.saveAll(contents);
+                for (Content content : saved) {
+                    events.add(new OutboxEvent(kafkaConfig.getContentTopic(), content.getId(), toJson(content)));
+                }
+                outboxRepository.saveAll(events);
+                // Suivre les événements avant le commit : le relais ne peut pas les envoyer avant
+                List<CompletableFuture<PublishResult>> tracked = new ArrayList<>(events.size());
+                for (OutboxEvent event : events) {
+                    tracked.add(outboxRelay.track(event));
+                }
+                return tracked;
+            });
+            outboxRelay.wakeUp();
+            recordDocuments(contents);
+            return futures;
+        } catch (RuntimeException e) {
+            outboxRelay.untrack(events, e);
+            throw e;
+        }
+    }
+
+    // Statistiques du score TF-IDF, mises à jour une fois la transaction validée
+    private void recordDocuments(List<Content> contents) {
+        if (!documentFrequencies.isEnabled()) {
+            return;
+        }
+        for (Content content : contents) {
+            documentFrequencies.addDocument(content.getTitle(), content.getBody());
+        }
+    }
+
+    // L'outbox stocke le JSON (colonne TEXT) ; le relais le convertit au format configuré
+    private String toJson(Content content) {
+        return new String(codec.encodeJson(ContentEvent.from(content)), StandardCharsets.UTF_8);
+    }
+
+    private static CompletableFuture<PublishResult> nullContent() {
+        return CompletableFuture.failedFuture(new IllegalArgumentException("Content is required"));
+    }
+
+    /**
+     * Sends the content to the content topic and, with sharded routing, a reference
+     * to it (the event without its body) to the shard of each of its keyword words.
+     * Completes once every record is acknowledged, with the position of the content
+     * topic record.
+     */
+    private CompletableFuture<PublishResult> send(Content savedContent) {
+        ContentEvent event;
+        try {
+            event = contentBodies.toWire(ContentEvent.from(savedContent));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<PublishResult> result = sendRecord(
+                new ProducerRecord<>(kafkaConfig.getContentTopic(), savedContent.getId(), event))
+                .thenApply(metadata -> new PublishResult(savedContent.getId(), metadata.partition(), metadata.offset()));
+        if (!kafkaConfig.isShardedRouting()) {
+            return result;
+        }
+
+        // Une copie par shard : sans le corps, que les abonnés relisent en base à la livraison
+        ContentEvent reference = event.withoutBody();
+        List<CompletableFuture<?>> all = new ArrayList<>();
+        all.add(result);
+        for (int shard : KeywordShards.shardsOfContent(event.getKeywords(), kafkaConfig.getShardCount())) {
+            all.add(sendRecord(new ProducerRecord<>(kafkaConfig.getContentShardsTopic(), shard,
+                    savedContent.getId(), reference)));
+        }
+        return CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).thenCompose(done -> result);
+    }
+
+    private CompletableFuture<RecordMetadata> sendRecord(ProducerRecord<String, ContentEvent> record) {
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        try {
+            producer.send(record, (metadata, e) -> {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(metadata);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     public List<Content> getPublisherContent(String publisherId) {
         return contentRepository.findByPublisherId(publisherId);
     }
@@ -89,6 +355,16 @@ public class ContentPublisher implements AutoCloseable {
     @Override
     public void close() {
         isActive = false;
+        // Terminer les écritures en cours avant de fermer le producer (qui vide ses envois)
+        persistenceExecutor.shutdown();
+        try {
+            if (!persistenceExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                persistenceExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            persistenceExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
         if (producer != null) {
             producer.close();
         }
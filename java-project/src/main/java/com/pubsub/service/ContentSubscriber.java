@@ -1,19 +1,14 @@
 package com.pubsub.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.pubsub.config.KafkaConfig;
 import com.pubsub.model.Content;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
+import com.pubsub.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -22,141 +17,95 @@ public class ContentSubscriber implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(ContentSubscriber.class);
     private final String username;
     private final SubscriptionService subscriptionService;
-    private final Map<String, List<Content>> notifications;
-    private final KafkaConsumer<String, String> consumer;
-    private final ObjectMapper objectMapper;
-    private final ExecutorService consumerThread;
-    private boolean isActive;
-    private final EmailService emailService;
+    private volatile boolean isActive;
+    private final EmailDispatcher emailDispatcher;
     private final UserService userService;
-    private final KafkaConfig kafkaConfig;
+    private final ContentFeed contentFeed;
+    private final String email;
+    // Contenus antérieurs à la fin du rattrapage déjà livrés, par le flux ou par la base
+    private final Instant catchUpUntil;
+    private final Set<String> boundaryIds;
 
     @Autowired
     public ContentSubscriber(@Value("${app.subscriber.username:default-user}") String username, 
                            SubscriptionService subscriptionService,
-                           EmailService emailService,
+                           EmailDispatcher emailDispatcher,
                            UserService userService,
-                           KafkaConfig kafkaConfig) {
+                           ContentFeed contentFeed) {
         this.username = username;
         this.subscriptionService = subscriptionService;
-        this.emailService = emailService;
+        this.emailDispatcher = emailDispatcher;
         this.userService = userService;
-        this.kafkaConfig = kafkaConfig;
-        this.notifications = new ConcurrentHashMap<>();
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
-        
-        String groupId = "subscriber-" + username + "-" + UUID.randomUUID();
-        this.consumer = new KafkaConsumer<>(kafkaConfig.getConsumerProps(groupId));
-        this.consumerThread = Executors.newSingleThreadExecutor();
+        this.contentFeed = contentFeed;
+        this.boundaryIds = ConcurrentHashMap.newKeySet();
         this.isActive = true;
 
-        startConsuming();
+        Optional<User> user = userService.findByUsername(username);
+        this.email = user.map(User::getEmail).orElse(null);
+        Instant lastSeen = user.map(u -> u.getLastSeenAt() != null ? u.getLastSeenAt() : u.getCreatedAt()).orElse(null);
+        this.catchUpUntil = Instant.now();
+
+        contentFeed.register(this, subscriptionService.getSubscriberKeywords(username), lastSeen, catchUpUntil);
         logger.info("ContentSubscriber initialized for user: {}", username);
     }
 
-    private void startConsuming() {
-        // Subscribe to content and notification topics
-        consumer.subscribe(Arrays.asList(kafkaConfig.getContentTopic(), kafkaConfig.getNotificationTopic()));
-        logger.info("Subscribed to topics: {}, {}", kafkaConfig.getContentTopic(), kafkaConfig.getNotificationTopic());
-        
-        consumerThread.submit(() -> {
-            try {
-                while (isActive) {
-                    ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(100));
-                    for (ConsumerRecord<String, String> record : records) {
-                        try {
-                            Content content = objectMapper.readValue(record.value(), Content.class);
-                            processContent(content);
-                            displayNotification(content);
-                            logger.debug("Processed content: {}", content.getTitle());
-                        } catch (Exception e) {
-                            logger.error("Error processing message: {}", e.getMessage(), e);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                logger.error("Error in consumer thread: {}", e.getMessage(), e);
-            } finally {
-                try {
-                    consumer.close();
-                    logger.info("Kafka consumer closed successfully");
-                } catch (Exception e) {
-                    logger.error("Error closing consumer: {}", e.getMessage(), e);
-                }
-            }
-        });
+    public String getUsername() {
+        return username;
     }
 
-    private void processContent(Content content) {
-        if (!isActive || content == null) {
-            return;
+    /**
+     * Called by a worker of the shared {@link ContentFeed} for every record matching
+     * at least one of this subscriber's keywords. May be invoked concurrently.
+     * Returns false if the content was not delivered.
+     */
+    boolean onContent(Content content, Set<String> matchedKeywords) {
+        if (!isActive || content == null || isBoundaryDuplicate(content)) {
+            return false;
         }
 
         try {
-            Set<String> activeKeywords = subscriptionService.getSubscriberKeywords(username);
-            Set<String> matchedKeywords = new HashSet<>();
-
-            for (String subscribedKeyword : activeKeywords) {
-                String[] keywordParts = subscribedKeyword.split("\\s+");
-                boolean matches = false;
-
-                // Vérifier les mots-clés du contenu
-                for (String contentKeyword : content.getKeywords()) {
-                    if (matchesKeyword(contentKeyword.toLowerCase(), keywordParts)) {
-                        matches = true;
-                        matchedKeywords.add(subscribedKeyword);
-                        break;
-                    }
-                }
-
-                // Vérifier le titre
-                if (!matches && matchesKeyword(content.getTitle().toLowerCase(), keywordParts)) {
-                    matches = true;
-                    matchedKeywords.add(subscribedKeyword);
-                }
-
-                // Vérifier le corps
-                if (!matches && matchesKeyword(content.getBody().toLowerCase(), keywordParts)) {
-                    matches = true;
-                    matchedKeywords.add(subscribedKeyword);
-                }
-
-                if (matches) {
-                    notifications.computeIfAbsent(subscribedKeyword, k -> new CopyOnWriteArrayList<>()).add(content);
-                    logger.info("Added notification for keyword '{}': {}", subscribedKeyword, content.getTitle());
-                }
-            }
-
-            // Envoyer une notification par email s'il y a des correspondances
-            if (!matchedKeywords.isEmpty()) {
-                userService.findByUsername(username).ifPresent(user -> {
-                    emailService.sendContentNotification(user.getEmail(), content, matchedKeywords);
-                });
+            // Envoyer une notification par email via le topic email
+            String recipient = email;
+            if (recipient != null) {
+                emailDispatcher.submit(recipient, content, matchedKeywords);
             }
         } catch (Exception e) {
             logger.error("Error processing content: {}", e.getMessage(), e);
         }
+
+        displayNotification(content);
+        logger.debug("Processed content: {}", content.getTitle());
+        return true;
     }
 
-    private void displayNotification(Content content) {
-        System.out.println("\n=== New Content Notification for " + username + " ===");
-        System.out.println("Title: " + content.getTitle());
-        System.out.println("Publisher: " + content.getPublisherId());
-        System.out.println("Content: " + content.getBody());
-        System.out.println("Keywords: " + String.join(", ", content.getKeywords()));
-        System.out.println("Published at: " + content.getCreatedAt());
-        System.out.println("=======================================");
-        System.out.println("Press Enter to continue...");
+    /**
+     * Called by {@link ContentFeed} with matching content published while the user
+     * was away. Catch-up content is only recorded as notifications, by the feed,
+     * without sending emails. Returns false if the live stream already delivered it.
+     */
+    boolean onCatchUp(Content content, Set<String> matchedKeywords) {
+        return isActive && !isBoundaryDuplicate(content);
     }
 
-    private boolean matchesKeyword(String text, String[] keywordParts) {
-        for (String part : keywordParts) {
-            if (!text.contains(part.toLowerCase())) {
-                return false;
-            }
+    private boolean isBoundaryDuplicate(Content content) {
+        if (content.getCreatedAt() == null || content.getCreatedAt().isAfter(catchUpUntil)) {
+            return false;
+        }
+        return !boundaryIds.add(content.getId());
+    }
+
+    private void displayNotification(Content content) {
+        // Les workers du flux partagé peuvent afficher en parallèle
+        synchronized (System.out) {
+            System.out.println("\n=== New Content Notification for " + username + " ===");
+            System.out.println("Title: " + content.getTitle());
+            System.out.println("Publisher: " + content.getPublisherId());
+            System.out.println("Content: " + content.getBody());
+            System.out.println("Keywords: " + String.join(", ", content.getKeywords()));
+            System.out.println("Published at: " + content.getCreatedAt());
+            System.out.println("=======================================");
+            System.out.println("Press Enter to continue...");
         }
-        return true;
     }
 
     public boolean addSubscription(String keyword) {
@@ -171,7 +120,7 @@ public class ContentSubscriber implements AutoCloseable {
 
         try {
             subscriptionService.createSubscription(username, keyword.trim().toLowerCase());
-            notifications.putIfAbsent(keyword.trim().toLowerCase(), new CopyOnWriteArrayList<>());
+            contentFeed.addKeyword(username, keyword.trim().toLowerCase());
             logger.info("User {} subscribed to keyword: {}", username, keyword);
             return true;
         } catch (Exception e) {
@@ -187,7 +136,7 @@ public class ContentSubscriber implements AutoCloseable {
 
         boolean removed = subscriptionService.removeSubscription(username, keyword.trim().toLowerCase());
         if (removed) {
-            notifications.remove(keyword.trim().toLowerCase());
+            contentFeed.removeKeyword(username, keyword.trim().toLowerCase());
             logger.info("User {} unsubscribed from keyword: {}", username, keyword);
         }
         return removed;
@@ -197,21 +146,14 @@ public class ContentSubscriber implements AutoCloseable {
         return subscriptionService.getSubscriberKeywords(username);
     }
 
-    public Map<String, List<Content>> getNotifications() {
-        return new HashMap<>(notifications);
-    }
-
     @Override
     public void close() {
         isActive = false;
-        consumer.wakeup();
-        consumerThread.shutdown();
+        contentFeed.unregister(this);
         try {
-            if (!consumerThread.awaitTermination(5, TimeUnit.SECONDS)) {
-                consumerThread.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            consumerThread.shutdownNow();
+            userService.markSeen(username, Instant.now());
+        } catch (Exception e) {
+            logger.error("Error saving last seen time for {}: {}", username, e.getMessage(), e);
         }
         logger.info("ContentSubscriber closed for user: {}", username);
     }
@@ -0,0 +1,233 @@
+package com.pubsub.service;
+
+import com.pubsub.model.Content;
+import com.pubsub.model.PendingDigestItem;
+import com.pubsub.repository.ContentRepository;
+import com.pubsub.repository.PendingDigestItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Coalesces the email notifications of each recipient into digests. Matches are
+ * collected per recipient and sent as one email once the oldest one is
+ * {@code app.email.digest.window-ms} old or {@code app.email.digest.max-items}
+ * have accumulated. Pending matches are persisted and reloaded on startup, so a
+ * restart does not lose them; they are deleted only once the relay accepted the
+ * digest. A digest given up by the outbound queue is retried with the next
+ * window, up to {@value #MAX_SEND_ATTEMPTS} times.
+ */
+@Service
+public class EmailDigestService implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(EmailDigestService.class);
+    private static final int MAX_SEND_ATTEMPTS = 3;
+    private final EmailService emailService;
+    private final PendingDigestItemRepository pendingRepository;
+    private final ContentRepository contentRepository;
+    private final boolean enabled;
+    private final long windowMs;
+    private final int maxItems;
+    private final Map<String, Digest> digests;
+    private final ScheduledExecutorService scheduler;
+
+    private static final class Digest {
+        private final Instant openedAt;
+        private final List<EmailJob> jobs = new ArrayList<>();
+        private final List<Long> itemIds = new ArrayList<>();
+        // Digests déjà abandonnés par la file d'envoi parmi ceux repris dans celui-ci
+        private int failedAttempts;
+        private boolean closed;
+
+        private Digest(Instant openedAt) {
+            this.openedAt = openedAt;
+        }
+    }
+
+    @Autowired
+    public EmailDigestService(EmailService emailService,
+                              PendingDigestItemRepository pendingRepository,
+                              ContentRepository contentRepository,
+                              @Value("${app.email.digest.enabled:false}") boolean enabled,
+                              @Value("${app.email.digest.window-ms:300000}") long windowMs,
+                              @Value("${app.email.digest.max-items:20}") int maxItems) {
+        this.emailService = emailService;
+        this.pendingRepository = pendingRepository;
+        this.contentRepository = contentRepository;
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.maxItems = Math.max(1, maxItems);
+        this.digests = new ConcurrentHashMap<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        restorePending();
+        long checkInterval = Math.max(100, Math.min(windowMs / 10, 1000));
+        scheduler.scheduleWithFixedDelay(this::flushExpired, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+        logger.info("Email digests enabled: window {} ms, max {} items", windowMs, maxItems);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds a match to the recipient's digest, sending it right away if it is full.
+     */
+    public void add(EmailJob job) {
+        PendingDigestItem item = pendingRepository.save(
+                new PendingDigestItem(job.getRecipient(), job.getContent().getId(), job.getMatchedKeywords()));
+
+        boolean full;
+        while (true) {
+            Digest digest = digests.computeIfAbsent(job.getRecipient(), r -> new Digest(Instant.now()));
+            synchronized (digest) {
+                // Digest en cours d'envoi : en ouvrir un nouveau
+                if (digest.closed) {
+                    continue;
+                }
+                digest.jobs.add(job);
+                digest.itemIds.add(item.getId());
+                full = digest.jobs.size() >= maxItems;
+            }
+            break;
+        }
+        if (full) {
+            flush(job.getRecipient());
+        }
+    }
+
+    private void flushExpired() {
+        try {
+            Instant limit = Instant.now().minusMillis(windowMs);
+            for (Map.Entry<String, Digest> entry : digests.entrySet()) {
+                if (entry.getValue().openedAt.isBefore(limit)) {
+                    flush(entry.getKey());
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error flushing email digests: {}", e.getMessage(), e);
+        }
+    }
+
+    private void flush(String recipient) {
+        Digest digest = digests.remove(recipient);
+        if (digest == null) {
+            return;
+        }
+
+        List<EmailJob> jobs;
+        List<Long> itemIds;
+        int failedAttempts;
+        synchronized (digest) {
+            digest.closed = true;
+            jobs = new ArrayList<>(digest.jobs);
+            itemIds = new ArrayList<>(digest.itemIds);
+            failedAttempts = digest.failedAttempts;
+        }
+        if (jobs.isEmpty()) {
+            return;
+        }
+
+        CompletableFuture<Boolean> result = emailService.sendDigest(recipient, jobs);
+        if (result.isCompletedExceptionally()) {
+            // Non mis en file : réessayer lors de la prochaine fenêtre
+            requeue(recipient, jobs, itemIds, failedAttempts);
+            return;
+        }
+        result.whenComplete((sent, e) -> {
+            if (e != null) {
+                // File fermée avant l'envoi : les éléments persistés seront rechargés au redémarrage
+                logger.warn("Digest email to {} not sent before shutdown, kept for restart", recipient);
+            } else if (sent) {
+                deletePending(itemIds);
+            } else if (failedAttempts + 1 < MAX_SEND_ATTEMPTS) {
+                requeue(recipient, jobs, itemIds, failedAttempts + 1);
+            } else {
+                logger.error("Dropping digest of {} items for {} after {} failed sends",
+                        jobs.size(), recipient, MAX_SEND_ATTEMPTS);
+                deletePending(itemIds);
+            }
+        });
+    }
+
+    // Remet les éléments en tête du prochain digest du destinataire, toujours persistés
+    private void requeue(String recipient, List<EmailJob> jobs, List<Long> itemIds, int failedAttempts) {
+        while (true) {
+            Digest retry = digests.computeIfAbsent(recipient, r -> new Digest(Instant.now()));
+            synchronized (retry) {
+                if (retry.closed) {
+                    continue;
+                }
+                retry.jobs.addAll(0, jobs);
+                retry.itemIds.addAll(0, itemIds);
+                retry.failedAttempts = Math.max(retry.failedAttempts, failedAttempts);
+            }
+            break;
+        }
+    }
+
+    private void deletePending(List<Long> itemIds) {
+        try {
+            pendingRepository.deleteAllByIdInBatch(itemIds);
+        } catch (Exception e) {
+            // Au pire, le digest sera renvoyé au redémarrage
+            logger.error("Error deleting {} sent digest items: {}", itemIds.size(), e.getMessage(), e);
+        }
+    }
+
+    private void restorePending() {
+        List<PendingDigestItem> items = pendingRepository.findAll();
+        if (items.isEmpty()) {
+            return;
+        }
+
+        Set<String> contentIds = new HashSet<>();
+        for (PendingDigestItem item : items) {
+            contentIds.add(item.getContentId());
+        }
+        Map<String, Content> contents = new HashMap<>();
+        for (Content content : contentRepository.findAllById(contentIds)) {
+            contents.put(content.getId(), content);
+        }
+
+        List<Long> orphans = new ArrayList<>();
+        for (PendingDigestItem item : items) {
+            Content content = contents.get(item.getContentId());
+            if (content == null) {
+                orphans.add(item.getId());
+                continue;
+            }
+            Digest digest = digests.computeIfAbsent(item.getRecipient(), r -> new Digest(item.getCreatedAt()));
+            digest.jobs.add(new EmailJob(item.getRecipient(), content, item.getKeywords()));
+            digest.itemIds.add(item.getId());
+        }
+        if (!orphans.isEmpty()) {
+            pendingRepository.deleteAllByIdInBatch(orphans);
+        }
+        logger.info("Restored {} pending digest items for {} recipients", items.size() - orphans.size(), digests.size());
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Les digests en attente restent persistés et seront envoyés au redémarrage
+        logger.info("EmailDigestService closed with {} pending digests", digests.size());
+    }
+}
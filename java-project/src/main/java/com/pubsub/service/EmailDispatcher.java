@@ -0,0 +1,262 @@
+package com.pubsub.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.pubsub.config.KafkaConfig;
+import com.pubsub.model.Content;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Decouples email delivery from content consumption. Matches are published as
+ * {@link EmailJob}s on the email topic, keyed by recipient, and a pool of email
+ * workers of the shared {@code email-workers} group consumes and sends them, so
+ * SMTP latency never holds up the content feed. With {@code app.email.async=false}
+ * emails are sent inline as before. Either way, jobs go to the
+ * {@link EmailDigestService} instead when digests are enabled.
+ *
+ * <p>Delivery from the email topic is at least once: a worker commits the offsets
+ * of a poll only once all its emails were accepted by the relay or given up (or
+ * persisted, for digests), polling with its partitions paused meanwhile. A crash
+ * or a rebalance before that sends the uncommitted emails again. A worker that
+ * fails, including when a digest item cannot be persisted, is restarted with a
+ * new consumer after {@value #RESTART_BACKOFF_MS} ms and reads its uncommitted
+ * jobs again.
+ */
+@Service
+public class EmailDispatcher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(EmailDispatcher.class);
+    private static final String WORKER_GROUP = "email-workers";
+    private static final int MAX_POLL_RECORDS = 50;
+    private static final long RESTART_BACKOFF_MS = 5000;
+    private final EmailService emailService;
+    private final EmailDigestService digestService;
+    private final KafkaConfig kafkaConfig;
+    private final ObjectMapper objectMapper;
+    private final boolean async;
+    private final KafkaProducer<String, String> producer;
+    private final List<KafkaConsumer<String, String>> consumers;
+    private final ExecutorService workers;
+    private volatile boolean isActive;
+
+    @Autowired
+    public EmailDispatcher(EmailService emailService,
+                           EmailDigestService digestService,
+                           KafkaConfig kafkaConfig,
+                           @Value("${app.email.async:true}") boolean async,
+                           @Value("${app.email.workers:3}") int workerCount) {
+        this.emailService = emailService;
+        this.digestService = digestService;
+        this.kafkaConfig = kafkaConfig;
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.async = async;
+        this.consumers = new CopyOnWriteArrayList<>();
+        this.isActive = true;
+
+        if (async) {
+            this.producer = new KafkaProducer<>(kafkaConfig.getProducerProps());
+            this.workers = Executors.newFixedThreadPool(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                workers.submit(this::workerLoop);
+            }
+            logger.info("EmailDispatcher started with {} email workers on {}", workerCount, kafkaConfig.getEmailTopic());
+        } else {
+            this.producer = null;
+            this.workers = null;
+            logger.info("EmailDispatcher sending emails synchronously");
+        }
+    }
+
+    public void submit(String recipient, Content content, Set<String> matchedKeywords) {
+        if (!async) {
+            deliver(new EmailJob(recipient, content, matchedKeywords));
+            return;
+        }
+
+        try {
+            String jobJson = objectMapper.writeValueAsString(new EmailJob(recipient, content, matchedKeywords));
+            producer.send(new ProducerRecord<>(kafkaConfig.getEmailTopic(), recipient, jobJson), (metadata, e) -> {
+                if (e != null) {
+                    logger.error("Failed to queue email for {}: {}", recipient, e.getMessage(), e);
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Error queuing email for {}: {}", recipient, e.getMessage(), e);
+        }
+    }
+
+    private void workerLoop() {
+        while (isActive) {
+            try {
+                consume();
+            } catch (Exception e) {
+                logger.error("Email worker failed, restarting in {} ms: {}", RESTART_BACKOFF_MS, e.getMessage(), e);
+                try {
+                    Thread.sleep(RESTART_BACKOFF_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void consume() {
+        Properties props = kafkaConfig.getConsumerProps(WORKER_GROUP, "earliest");
+        // Les envois SMTP sont lents : limiter le lot pour rester sous max.poll.interval.ms
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(MAX_POLL_RECORDS));
+        KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props);
+        consumers.add(consumer);
+        try {
+            consumer.subscribe(Collections.singletonList(kafkaConfig.getEmailTopic()));
+            while (isActive) {
+                applyBackpressure(consumer);
+                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(500));
+                if (records.isEmpty()) {
+                    continue;
+                }
+                List<EmailJob> jobs = new ArrayList<>(records.count());
+                for (ConsumerRecord<String, String> record : records) {
+                    try {
+                        jobs.add(objectMapper.readValue(record.value(), EmailJob.class));
+                    } catch (Exception e) {
+                        logger.error("Error reading email job at offset {}: {}", record.offset(), e.getMessage(), e);
+                    }
+                }
+                if (!awaitDelivery(consumer, deliver(jobs))) {
+                    // Fermeture en cours : les offsets non validés seront relus au redémarrage
+                    return;
+                }
+                try {
+                    consumer.commitSync();
+                } catch (CommitFailedException e) {
+                    // Partitions réattribuées pendant l'envoi : le nouveau propriétaire renverra ces emails
+                    logger.warn("Email offsets not committed after a rebalance, emails may be sent twice: {}",
+                            e.getMessage());
+                }
+            }
+        } catch (WakeupException e) {
+            // Attendu lors de la fermeture
+        } finally {
+            consumers.remove(consumer);
+            try {
+                consumer.close();
+            } catch (Exception e) {
+                logger.error("Error closing email consumer: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Keeps polling with every partition paused, so the worker stays in the group,
+     * until the emails of the last poll are sent or given up. Returns false if the
+     * worker is stopping, and throws if some emails could not be queued.
+     */
+    private boolean awaitDelivery(KafkaConsumer<String, String> consumer, CompletableFuture<Void> delivered) {
+        while (!delivered.isDone()) {
+            if (!isActive) {
+                return false;
+            }
+            consumer.pause(consumer.assignment());
+            ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(200));
+            // Partitions attribuées pendant l'attente, pas encore en pause : relire ces enregistrements plus tard
+            for (TopicPartition partition : records.partitions()) {
+                consumer.seek(partition, records.records(partition).get(0).offset());
+            }
+        }
+        consumer.resume(consumer.paused());
+        if (delivered.isCompletedExceptionally()) {
+            if (!isActive) {
+                return false;
+            }
+            // Redémarrer le worker sans valider : les emails seront relus
+            throw new IllegalStateException("Email batch not fully queued, offsets left uncommitted");
+        }
+        return true;
+    }
+
+    /**
+     * Pauses the worker while the outbound queue cannot take a full poll, so the
+     * consumer keeps polling (and stays in the group) instead of blocking on submit.
+     */
+    private void applyBackpressure(KafkaConsumer<String, String> consumer) {
+        if (digestService.isEnabled()) {
+            return;
+        }
+        int capacity = emailService.getOutboundCapacity();
+        if (capacity < MAX_POLL_RECORDS) {
+            if (consumer.paused().isEmpty()) {
+                logger.warn("Outbound email queue nearly full ({} free slots), pausing email worker", capacity);
+            }
+            consumer.pause(consumer.assignment());
+        } else if (!consumer.paused().isEmpty() && capacity >= 2 * MAX_POLL_RECORDS) {
+            consumer.resume(consumer.paused());
+            logger.info("Outbound email queue drained ({} free slots), resuming email worker", capacity);
+        }
+    }
+
+    // Complété une fois les emails envoyés ou abandonnés, ou les éléments de digest persistés
+    private CompletableFuture<Void> deliver(List<EmailJob> jobs) {
+        if (!digestService.isEnabled()) {
+            return emailService.sendContentNotifications(jobs);
+        }
+        for (EmailJob job : jobs) {
+            try {
+                deliver(job);
+            } catch (Exception e) {
+                // Lot non validé : relu après redémarrage du worker, les éléments déjà ajoutés compris
+                logger.error("Error queuing digest item for {}: {}", job.getRecipient(), e.getMessage(), e);
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void deliver(EmailJob job) {
+        if (digestService.isEnabled()) {
+            digestService.add(job);
+        } else {
+            emailService.sendContentNotification(job.getRecipient(), job.getContent().toContent(),
+                    job.getMatchedKeywords());
+        }
+    }
+
+    @Override
+    public void close() {
+        isActive = false;
+        if (!async) {
+            return;
+        }
+        for (KafkaConsumer<String, String> consumer : consumers) {
+            consumer.wakeup();
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        producer.close();
+        logger.info("EmailDispatcher closed");
+    }
+}
@@ -0,0 +1,54 @@
+package com.pubsub.service;
+
+import com.pubsub.event.ContentEvent;
+import com.pubsub.model.Content;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Email notification request carried on the email topic. The content travels as
+ * a {@link ContentEvent}, so reading a job back keeps the id and creation time
+ * of the content instead of building a new entity; jobs written with the former
+ * {@link Content} JSON are read the same way.
+ */
+public class EmailJob {
+    private String recipient;
+    private Set<String> matchedKeywords;
+    private ContentEvent content;
+
+    //constructeur pour deserialisation json
+    public EmailJob() {
+        this.matchedKeywords = new HashSet<>();
+    }
+
+    public EmailJob(String recipient, Content content, Set<String> matchedKeywords) {
+        this.recipient = recipient;
+        this.content = ContentEvent.from(content);
+        this.matchedKeywords = new HashSet<>(matchedKeywords);
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(String recipient) {
+        this.recipient = recipient;
+    }
+
+    public Set<String> getMatchedKeywords() {
+        return matchedKeywords;
+    }
+
+    public void setMatchedKeywords(Set<String> matchedKeywords) {
+        this.matchedKeywords = matchedKeywords;
+    }
+
+    public ContentEvent getContent() {
+        return content;
+    }
+
+    public void setContent(ContentEvent content) {
+        this.content = content;
+    }
+}
@@ -10,59 +10,197 @@ import org.springframework.stereotype.Service;
 
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class EmailService {
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
+    private static final EmailTemplate NOTIFICATION_TEMPLATE = EmailTemplate.compile("""
+                <html>
+                <body>
+            <h2>Nouveau contenu correspondant à vos abonnements</h2>
+            <div style='margin: 20px 0;'>
+                <h3>{{title}}</h3>
+                <p><strong>Publisher:</strong> {{publisherId}}</p>
+                <p><strong>Published at:</strong> {{createdAt}}</p>
+                <p><strong>Matched Keywords:</strong> {{matchedKeywords}}</p>
+                <div style='border: 1px solid #ccc; padding: 10px;'>
+                    <p>{{body}}</p>
+                </div>
+                <p><strong>Keywords:</strong> {{keywords}}</p>
+            </div>
+            <p style='font-size: 12px;'>
+                Ceci est un message automatique de notification du système de pubsub du contenu.
+            </p>
+        </body>
+                </html>
+        """);
+    private static final EmailTemplate DIGEST_TEMPLATE = EmailTemplate.compile("""
+                <html>
+                <body>
+            <h2>Nouveaux contenus correspondant à vos abonnements</h2>
+            {{sections}}
+            <p style='font-size: 12px;'>
+                Ceci est un message automatique de notification du système de pubsub du contenu.
+            </p>
+        </body>
+                </html>
+        """);
+    private static final EmailTemplate DIGEST_ITEM_TEMPLATE = EmailTemplate.compile("""
+            <div style='margin: 20px 0;'>
+                <h3>{{title}}</h3>
+                <p><strong>Publisher:</strong> {{publisherId}}</p>
+                <p><strong>Published at:</strong> {{createdAt}}</p>
+                <p><strong>Matched Keywords:</strong> {{matchedKeywords}}</p>
+                <div style='border: 1px solid #ccc; padding: 10px;'>
+                    <p>{{body}}</p>
+                </div>
+                <p><strong>Keywords:</strong> {{keywords}}</p>
+            </div>
+            """);
+    private static final String MATCHED_KEYWORDS_SLOT = "matchedKeywords";
+    private static final int RENDERED_CONTENT_CACHE_SIZE = 256;
+    private static final int MAX_BUFFER_CAPACITY = 256 * 1024;
+    private static final ThreadLocal<StringBuilder> RENDER_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+    // Partie propre au contenu déjà rendue, seuls les mots-clés correspondants varient par destinataire
+    private final Map<String, EmailTemplate> renderedContent = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, EmailTemplate> eldest) {
+                    return size() > RENDERED_CONTENT_CACHE_SIZE;
+                }
+            });
+
     @Autowired
     private JavaMailSender mailSender;
 
-    public void sendContentNotification(String recipientEmail, Content content, Set<String> matchedKeywords) {
+    @Autowired
+    private OutboundMailQueue outboundQueue;
+
+    /**
+     * Queues the notification. The future completes once it is sent or given up,
+     * and exceptionally if it could not be queued or the queue closed first; see
+     * {@link OutboundMailQueue#submit}.
+     */
+    public CompletableFuture<Boolean> sendContentNotification(String recipientEmail, Content content,
+                                                              Set<String> matchedKeywords) {
+        MimeMessage message;
+        try {
+            message = createContentNotification(recipientEmail, content, matchedKeywords);
+        } catch (MessagingException e) {
+            logger.error("Failed to build email notification for {}: {}", recipientEmail, e.getMessage(), e);
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> result = outboundQueue.submit(message);
+        if (result.isCompletedExceptionally()) {
+            logger.error("Email notification to {} not queued: outbound queue closed", recipientEmail);
+        } else {
+            logger.info("Email notification queued for {} for content: {}", recipientEmail, content.getTitle());
+        }
+        return result;
+    }
+
+    /**
+     * Queues one notification per job; waits while the outbound queue is full.
+     * The future completes once every notification is sent or given up.
+     */
+    public CompletableFuture<Void> sendContentNotifications(List<EmailJob> jobs) {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[jobs.size()];
+        for (int i = 0; i < jobs.size(); i++) {
+            EmailJob job = jobs.get(i);
+            results[i] = sendContentNotification(job.getRecipient(), job.getContent().toContent(),
+                    job.getMatchedKeywords());
+        }
+        return CompletableFuture.allOf(results);
+    }
+
+    /**
+     * Number of emails that can still be queued without waiting.
+     */
+    public int getOutboundCapacity() {
+        return outboundQueue.getRemainingCapacity();
+    }
+
+    private MimeMessage createContentNotification(String recipientEmail, Content content, Set<String> matchedKeywords)
+            throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+
+        helper.setTo(recipientEmail);
+        helper.setSubject("New Content Matching Your Subscriptions: " + content.getTitle());
+
+        String emailContent = buildEmailContent(content, matchedKeywords);
+        helper.setText(emailContent, true); 
+        return message;
+    }
+
+    /**
+     * Queues all the given matches for the recipient as a single digest email.
+     * The future completes as for {@link OutboundMailQueue#submit}, and
+     * exceptionally if the email could not be built or queued.
+     */
+    public CompletableFuture<Boolean> sendDigest(String recipientEmail, List<EmailJob> jobs) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, true);
 
             helper.setTo(recipientEmail);
-            helper.setSubject("New Content Matching Your Subscriptions: " + content.getTitle());
+            helper.setSubject(jobs.size() + " nouveaux contenus correspondant à vos abonnements");
+            helper.setText(buildDigestContent(jobs), true);
 
-            String emailContent = buildEmailContent(content, matchedKeywords);
-            helper.setText(emailContent, true); 
+            CompletableFuture<Boolean> result = outboundQueue.submit(message);
+            if (result.isCompletedExceptionally()) {
+                logger.error("Digest email to {} not queued: outbound queue closed", recipientEmail);
+            } else {
+                logger.info("Digest email with {} items queued for {}", jobs.size(), recipientEmail);
+            }
+            return result;
+        } catch (Exception e) {
+            logger.error("Failed to send digest email to {}: {}", recipientEmail, e.getMessage(), e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            mailSender.send(message);
-            logger.info("Email notification sent to {} for content: {}", recipientEmail, content.getTitle());
-        } catch (MessagingException e) {
-            logger.error("Failed to send email notification to {}: {}", recipientEmail, e.getMessage(), e);
+    private String buildDigestContent(List<EmailJob> jobs) {
+        StringBuilder sections = new StringBuilder();
+        Map<String, String> values = new HashMap<>();
+        for (EmailJob job : jobs) {
+            Content content = job.getContent().toContent();
+            values.put("title", String.valueOf(content.getTitle()));
+            values.put("publisherId", String.valueOf(content.getPublisherId()));
+            values.put("createdAt", String.valueOf(content.getCreatedAt()));
+            values.put(MATCHED_KEYWORDS_SLOT, String.join(", ", job.getMatchedKeywords()));
+            values.put("body", String.valueOf(content.getBody()));
+            values.put("keywords", String.join(", ", content.getKeywords()));
+            DIGEST_ITEM_TEMPLATE.render(values, sections);
         }
+
+        StringBuilder digest = new StringBuilder(DIGEST_TEMPLATE.getLength() + sections.length());
+        return DIGEST_TEMPLATE.render(Map.of("sections", sections.toString()), digest).toString();
     }
 
     private String buildEmailContent(Content content, Set<String> matchedKeywords) {
-        return String.format("""
-                        <html>
-                        <body>
-                    <h2>Nouveau contenu correspondant à vos abonnements</h2>
-                    <div style='margin: 20px 0;'>
-                        <h3>%s</h3>
-                        <p><strong>Publisher:</strong> %s</p>
-                        <p><strong>Published at:</strong> %s</p>
-                        <p><strong>Matched Keywords:</strong> %s</p>
-                        <div style='border: 1px solid #ccc; padding: 10px;'>
-                            <p>%s</p>
-                        </div>
-                        <p><strong>Keywords:</strong> %s</p>
-                    </div>
-                    <p style='font-size: 12px;'>
-                        Ceci est un message automatique de notification du système de pubsub du contenu.
-                    </p>
-                </body>
-                        </html>
-                        """,
-                content.getTitle(),
-                content.getPublisherId(),
-                content.getCreatedAt(),
-                String.join(", ", matchedKeywords),
-                content.getBody(),
-                String.join(", ", content.getKeywords()));
+        EmailTemplate rendered = renderedContent.computeIfAbsent(content.getId(), id -> renderContent(content));
+
+        StringBuilder buffer = RENDER_BUFFER.get();
+        if (buffer.capacity() > MAX_BUFFER_CAPACITY) {
+            buffer = new StringBuilder(rendered.getLength() + 256);
+            RENDER_BUFFER.set(buffer);
+        }
+        buffer.setLength(0);
+        return rendered.render(Map.of(MATCHED_KEYWORDS_SLOT, String.join(", ", matchedKeywords)), buffer).toString();
+    }
+
+    private EmailTemplate renderContent(Content content) {
+        Map<String, String> values = new HashMap<>();
+        values.put("title", String.valueOf(content.getTitle()));
+        values.put("publisherId", String.valueOf(content.getPublisherId()));
+        values.put("createdAt", String.valueOf(content.getCreatedAt()));
+        values.put("body", String.valueOf(content.getBody()));
+        values.put("keywords", String.join(", ", content.getKeywords()));
+        return NOTIFICATION_TEMPLATE.bind(values);
     }
 }
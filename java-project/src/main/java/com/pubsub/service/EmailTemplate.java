@@ -0,0 +1,87 @@
+package com.pubsub.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Email template parsed once into literal segments and {@code {{name}}} slots.
+ * Slots can be filled in two steps: {@link #bind} fills the per-content values
+ * and merges them into the literals, and {@link #render} only splices the
+ * remaining per-recipient values into a reusable buffer.
+ */
+public final class EmailTemplate {
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // literals.length == slots.length + 1
+    private final String[] literals;
+    private final String[] slots;
+
+    private EmailTemplate(String[] literals, String[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    public static EmailTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at index " + open);
+            }
+            literals.add(source.substring(position, open));
+            slots.add(source.substring(open + OPEN.length(), close).trim());
+            position = close + CLOSE.length();
+        }
+        literals.add(source.substring(position));
+        return new EmailTemplate(literals.toArray(new String[0]), slots.toArray(new String[0]));
+    }
+
+    /**
+     * Returns a template in which the given slots are replaced by their values and
+     * merged into the surrounding literals. Slots without a value are kept.
+     */
+    public EmailTemplate bind(Map<String, String> values) {
+        List<String> boundLiterals = new ArrayList<>();
+        List<String> boundSlots = new ArrayList<>();
+        StringBuilder current = new StringBuilder(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            if (values.containsKey(slots[i])) {
+                current.append(values.get(slots[i])).append(literals[i + 1]);
+            } else {
+                boundLiterals.add(current.toString());
+                boundSlots.add(slots[i]);
+                current.setLength(0);
+                current.append(literals[i + 1]);
+            }
+        }
+        boundLiterals.add(current.toString());
+        return new EmailTemplate(boundLiterals.toArray(new String[0]), boundSlots.toArray(new String[0]));
+    }
+
+    /**
+     * Appends the template to the buffer, filling every remaining slot.
+     */
+    public StringBuilder render(Map<String, String> values, StringBuilder buffer) {
+        buffer.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            buffer.append(values.get(slots[i])).append(literals[i + 1]);
+        }
+        return buffer;
+    }
+
+    public int getLength() {
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        return length;
+    }
+}
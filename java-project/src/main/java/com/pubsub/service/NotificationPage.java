@@ -0,0 +1,42 @@
+package com.pubsub.service;
+
+import com.pubsub.model.Content;
+import com.pubsub.model.Notification;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a subscriber's stored notifications, newest first, with the cursor
+ * to pass to read the following page ({@code null} on the last page).
+ */
+public class NotificationPage {
+    private final List<Notification> notifications;
+    private final Map<String, Content> contents;
+    private final Long nextCursor;
+
+    public NotificationPage(List<Notification> notifications, Map<String, Content> contents, Long nextCursor) {
+        this.notifications = notifications;
+        this.contents = contents;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Notification> getNotifications() {
+        return notifications;
+    }
+
+    /**
+     * Returns the notified content, or {@code null} if it has since been deleted.
+     */
+    public Content getContent(Notification notification) {
+        return contents.get(notification.getContentId());
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isEmpty() {
+        return notifications.isEmpty();
+    }
+}
@@ -0,0 +1,167 @@
+package com.pubsub.service;
+
+import com.pubsub.model.Content;
+import com.pubsub.model.Notification;
+import com.pubsub.repository.ContentRepository;
+import com.pubsub.repository.NotificationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Durable notification log keyed by subscriber. Notifications produced by the
+ * consumer are queued and written in JDBC batches by a background flusher, and
+ * read back newest first with keyset (cursor) pagination on the notification id.
+ * At most {@code app.notifications.max-pending} notifications wait in memory:
+ * beyond that, {@link #enqueue} blocks the consumer until the flusher catches up.
+ * When a batch cannot be written, its notifications are written one by one:
+ * duplicates of a stored notification are dropped, and the others that still
+ * fail are retried by the next flushes, then dropped after
+ * {@value #MAX_WRITE_ATTEMPTS} attempts, so that one bad row never holds back
+ * the notifications behind it.
+ */
+@Service
+public class NotificationStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationStore.class);
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private final NotificationRepository notificationRepository;
+    private final ContentRepository contentRepository;
+    private final BlockingQueue<Notification> pending;
+    private final ScheduledExecutorService flusher;
+    private final int batchSize;
+    // Notifications dont l'écriture individuelle a échoué, avec le nombre d'essais ; protégé par flush()
+    private final Map<Notification, Integer> unsaved = new LinkedHashMap<>();
+
+    @Autowired
+    public NotificationStore(NotificationRepository notificationRepository,
+                             ContentRepository contentRepository,
+                             @Value("${app.notifications.batch-size:500}") int batchSize,
+                             @Value("${app.notifications.flush-interval-ms:500}") long flushIntervalMs,
+                             @Value("${app.notifications.max-pending:10000}") int maxPending) {
+        this.notificationRepository = notificationRepository;
+        this.contentRepository = contentRepository;
+        this.batchSize = Math.max(1, batchSize);
+        this.pending = new LinkedBlockingQueue<>(Math.max(this.batchSize, maxPending));
+        this.flusher = Executors.newSingleThreadScheduledExecutor();
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the notification, waiting while too many are pending.
+     */
+    public void enqueue(String subscriberId, Content content, Set<String> keywords) {
+        Notification notification = new Notification(subscriberId, content.getId(), keywords);
+        if (pending.offer(notification)) {
+            return;
+        }
+        logger.warn("{} notifications waiting to be stored, holding back the consumer", pending.size());
+        try {
+            pending.put(notification);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while queuing notification for {}, dropped", subscriberId);
+        }
+    }
+
+    /**
+     * Writes every queued notification to the database, and retries the ones
+     * whose write failed before.
+     */
+    public synchronized void flush() {
+        if (!unsaved.isEmpty()) {
+            List<Notification> retried = new ArrayList<>(unsaved.keySet());
+            saveEach(retried);
+        }
+        List<Notification> batch = new ArrayList<>(batchSize);
+        while (pending.drainTo(batch, batchSize) > 0) {
+            try {
+                notificationRepository.saveAll(batch);
+                logger.debug("Stored {} notifications", batch.size());
+            } catch (RuntimeException e) {
+                logger.warn("Batch of {} notifications not stored ({}), storing them one by one",
+                        batch.size(), e.getMessage());
+                saveEach(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    private void saveEach(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            try {
+                notificationRepository.save(notification);
+                unsaved.remove(notification);
+            } catch (DataIntegrityViolationException e) {
+                // Déjà enregistrée pour ce contenu : rien à perdre
+                unsaved.remove(notification);
+                logger.debug("Notification already stored, dropped: {}", notification);
+            } catch (RuntimeException e) {
+                int attempts = unsaved.getOrDefault(notification, 0) + 1;
+                if (attempts >= MAX_WRITE_ATTEMPTS) {
+                    unsaved.remove(notification);
+                    logger.error("Dropping notification after {} failed writes: {} ({})",
+                            attempts, notification, e.getMessage());
+                } else {
+                    unsaved.put(notification, attempts);
+                }
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Error storing notifications: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a page of notifications older than the cursor, or the newest ones when
+     * the cursor is {@code null}.
+     */
+    public NotificationPage readPage(String subscriberId, Long cursor, int size) {
+        if (cursor == null) {
+            flushQuietly();
+        }
+
+        PageRequest page = PageRequest.of(0, size);
+        List<Notification> notifications = cursor == null
+                ? notificationRepository.findBySubscriberIdOrderByIdDesc(subscriberId, page)
+                : notificationRepository.findBySubscriberIdAndIdLessThanOrderByIdDesc(subscriberId, cursor, page);
+
+        Set<String> contentIds = new HashSet<>();
+        for (Notification notification : notifications) {
+            contentIds.add(notification.getContentId());
+        }
+        Map<String, Content> contents = new HashMap<>();
+        for (Content content : contentRepository.findAllById(contentIds)) {
+            contents.put(content.getId(), content);
+        }
+
+        Long nextCursor = notifications.size() < size ? null : notifications.get(notifications.size() - 1).getId();
+        return new NotificationPage(notifications, contents, nextCursor);
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        if (!unsaved.isEmpty() || !pending.isEmpty()) {
+            logger.error("NotificationStore closed with {} notifications not stored", unsaved.size() + pending.size());
+        }
+        logger.info("NotificationStore closed");
+    }
+}
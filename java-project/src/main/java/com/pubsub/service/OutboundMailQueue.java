@@ -0,0 +1,470 @@
+package com.pubsub.service;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue in front of the {@link SmtpTransportPool} that paces outbound
+ * email. Each send takes a token from the bucket of the recipient domain and from
+ * the bucket of the SMTP relay; a message without tokens reserves the next free
+ * slot, and it or a message whose send failed with a transient error is
+ * rescheduled in a {@link DelayQueue} so the sender
+ * threads keep serving the other domains meanwhile. The relay slot is only
+ * reserved once the domain slot is due, so a backlog for one slow domain does not
+ * hold relay slots that other domains could use. When the provider throttles a
+ * domain (4xx replies) its rate is halved, then recovers gradually on success.
+ * Producers wait in {@link #submit} while the queue is full instead of losing mail,
+ * and get a future completed once the message is sent or given up. Messages
+ * ready at the same time are sent together, those of one domain as a batch over
+ * a single pooled connection ({@link SmtpTransportPool#sendBatch}). A runtime
+ * error from the transport gives the message up like a permanent SMTP failure,
+ * so it never stops a sender thread.
+ */
+public class OutboundMailQueue implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OutboundMailQueue.class);
+    private static final long STATS_INTERVAL_MS = 60000;
+    // Plancher du débit adaptatif, en fraction du débit configuré
+    private static final int MIN_RATE_DIVISOR = 16;
+    // Messages prêts au plus envoyés d'un coup, sur une connexion par domaine
+    private static final int MAX_BATCH_SIZE = 50;
+
+    private final SmtpTransportPool transportPool;
+    private final Semaphore capacity;
+    private final int maxSize;
+    private final DelayQueue<OutboundMail> scheduled;
+    private final Map<String, TokenBucket> domainBuckets;
+    private final TokenBucket relayBucket;
+    private final double domainRate;
+    private final int domainBurst;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService reporter;
+    private volatile boolean isActive;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private static final class OutboundMail implements Delayed {
+        private final MimeMessage message;
+        private final String domain;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private int attempts;
+        // Créneaux déjà réservés pour le prochain essai
+        private boolean domainReserved;
+        private boolean relayReserved;
+        private volatile long readyAt;
+
+        private OutboundMail(MimeMessage message, String domain) {
+            this.message = message;
+            this.domain = domain;
+            this.readyAt = System.nanoTime();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAt, ((OutboundMail) other).readyAt);
+        }
+    }
+
+    /**
+     * Token bucket whose refill rate can be lowered and restored (AIMD) when the
+     * provider signals throttling. Guarded by the queue's bucket lock.
+     */
+    private static final class TokenBucket {
+        private final double maxRate;
+        private final double burst;
+        private double rate;
+        private double tokens;
+        private long refilledAt;
+
+        private TokenBucket(double ratePerSecond, int burst) {
+            this.maxRate = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = Math.max(1, burst);
+            this.rate = maxRate;
+            this.tokens = this.burst;
+            this.refilledAt = System.nanoTime();
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate);
+            refilledAt = now;
+        }
+
+        /**
+         * Takes a token, possibly going into debt. Returns the nanoseconds until the
+         * token is actually available, 0 if it already is.
+         */
+        private long take() {
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate);
+        }
+
+        private boolean backOff() {
+            double reduced = Math.max(maxRate / MIN_RATE_DIVISOR, rate / 2);
+            boolean changed = reduced < rate;
+            rate = reduced;
+            tokens = Math.min(tokens, 0);
+            return changed;
+        }
+
+        private void recover() {
+            rate = Math.min(maxRate, rate + maxRate / 20);
+        }
+
+        private boolean isIdle() {
+            return tokens >= burst && rate >= maxRate;
+        }
+    }
+
+    public OutboundMailQueue(SmtpTransportPool transportPool, int maxSize, int senderCount,
+                             double domainRate, int domainBurst, double relayRate, int relayBurst,
+                             int maxAttempts, long initialBackoffMs, long maxBackoffMs) {
+        this.transportPool = transportPool;
+        this.maxSize = Math.max(1, maxSize);
+        this.capacity = new Semaphore(this.maxSize);
+        this.scheduled = new DelayQueue<>();
+        this.domainBuckets = new ConcurrentHashMap<>();
+        this.relayBucket = new TokenBucket(relayRate, relayBurst);
+        this.domainRate = domainRate;
+        this.domainBurst = domainBurst;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.isActive = true;
+
+        int threads = Math.max(1, senderCount);
+        this.senders = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            senders.submit(this::senderLoop);
+        }
+        this.reporter = Executors.newSingleThreadScheduledExecutor();
+        this.reporter.scheduleWithFixedDelay(this::report, STATS_INTERVAL_MS, STATS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        logger.info("Outbound mail queue started: capacity {}, {} senders, {}/s per domain, {}/s for the relay",
+                this.maxSize, threads, domainRate, relayRate);
+    }
+
+    /**
+     * Queues the message, waiting while the queue is full. The future completes
+     * with true once the relay accepted the message, with false if it was given up
+     * (permanent failure or retries exhausted), and exceptionally if it was not
+     * queued or is still unsent when the queue closes.
+     */
+    public CompletableFuture<Boolean> submit(MimeMessage message) {
+        if (!isActive) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Outbound mail queue closed"));
+        }
+        try {
+            capacity.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        if (!isActive) {
+            capacity.release();
+            return CompletableFuture.failedFuture(new IllegalStateException("Outbound mail queue closed"));
+        }
+        OutboundMail mail = new OutboundMail(message, domainOf(message));
+        scheduled.add(mail);
+        return mail.result;
+    }
+
+    private void senderLoop() {
+        try {
+            List<OutboundMail> batch = new ArrayList<>();
+            while (true) {
+                // À la fermeture, vider les messages prêts sans attendre ceux en backoff
+                OutboundMail mail = isActive ? scheduled.poll(500, TimeUnit.MILLISECONDS) : scheduled.poll();
+                if (mail == null) {
+                    if (isActive) {
+                        continue;
+                    }
+                    break;
+                }
+
+                batch.clear();
+                if (admit(mail)) {
+                    batch.add(mail);
+                }
+                // Autres messages déjà prêts : ceux d'un même domaine partagent une connexion
+                while (batch.size() < MAX_BATCH_SIZE && (mail = scheduled.poll()) != null) {
+                    if (admit(mail)) {
+                        batch.add(mail);
+                    }
+                }
+                sendByDomain(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reserves the domain slot, then the relay slot, of a ready message. Returns
+     * true if it can be sent now, false if it was rescheduled for its slot.
+     */
+    private boolean admit(OutboundMail mail) {
+        // Créneau réservé : le message ne repasse pas par ce seau à son réveil
+        if (!mail.domainReserved) {
+            mail.domainReserved = true;
+            long waitNanos = reserve(bucketOf(mail.domain));
+            if (waitNanos > 0) {
+                throttled.incrementAndGet();
+                reschedule(mail, waitNanos);
+                return false;
+            }
+        }
+        // Le relais n'est réservé qu'une fois le créneau du domaine venu
+        if (!mail.relayReserved) {
+            mail.relayReserved = true;
+            long waitNanos = reserve(relayBucket);
+            if (waitNanos > 0) {
+                throttled.incrementAndGet();
+                reschedule(mail, waitNanos);
+                return false;
+            }
+        }
+        mail.domainReserved = false;
+        mail.relayReserved = false;
+        return true;
+    }
+
+    private long reserve(TokenBucket bucket) {
+        synchronized (relayBucket) {
+            bucket.refill(System.nanoTime());
+            return bucket.take();
+        }
+    }
+
+    private void sendByDomain(List<OutboundMail> batch) {
+        if (batch.size() == 1) {
+            send(batch.get(0));
+            return;
+        }
+        Map<String, List<OutboundMail>> byDomain = new LinkedHashMap<>();
+        for (OutboundMail mail : batch) {
+            byDomain.computeIfAbsent(mail.domain, d -> new ArrayList<>()).add(mail);
+        }
+        for (List<OutboundMail> mails : byDomain.values()) {
+            if (mails.size() == 1) {
+                send(mails.get(0));
+            } else {
+                sendBatch(mails);
+            }
+        }
+    }
+
+    private void send(OutboundMail mail) {
+        try {
+            transportPool.send(mail.message);
+            onSent(mail);
+        } catch (MessagingException | RuntimeException e) {
+            onFailure(mail, e);
+        }
+    }
+
+    private void sendBatch(List<OutboundMail> mails) {
+        List<MimeMessage> messages = new ArrayList<>(mails.size());
+        for (OutboundMail mail : mails) {
+            messages.add(mail.message);
+        }
+        List<Exception> errors;
+        try {
+            errors = transportPool.sendBatch(messages);
+        } catch (MessagingException | RuntimeException e) {
+            for (OutboundMail mail : mails) {
+                onFailure(mail, e);
+            }
+            return;
+        }
+        for (int i = 0; i < mails.size(); i++) {
+            Exception error = i < errors.size() ? errors.get(i) : null;
+            if (error == null) {
+                onSent(mails.get(i));
+            } else {
+                onFailure(mails.get(i), error);
+            }
+        }
+    }
+
+    private void onSent(OutboundMail mail) {
+        sent.incrementAndGet();
+        capacity.release();
+        synchronized (relayBucket) {
+            bucketOf(mail.domain).recover();
+            relayBucket.recover();
+        }
+        mail.result.complete(true);
+    }
+
+    private void onFailure(OutboundMail mail, Exception error) {
+        mail.attempts++;
+        if (!(error instanceof MessagingException)) {
+            // Erreur hors protocole SMTP (adresse invalide, transport déconnecté) : pas de nouvel essai
+            failed.incrementAndGet();
+            capacity.release();
+            logger.error("Giving up on email to {} after an unexpected error: {}",
+                    recipientsOf(mail.message), error.getMessage(), error);
+            mail.result.complete(false);
+            return;
+        }
+
+        MessagingException e = (MessagingException) error;
+        int replyCode = replyCode(e);
+        if (replyCode >= 500 || mail.attempts >= maxAttempts) {
+            failed.incrementAndGet();
+            capacity.release();
+            logger.error("Giving up on email to {} after {} attempt(s): {}",
+                    recipientsOf(mail.message), mail.attempts, e.getMessage());
+            mail.result.complete(false);
+            return;
+        }
+
+        synchronized (relayBucket) {
+            // Sans code de réponse, c'est la connexion au relais qui a échoué
+            boolean slowedDown = replyCode < 0 ? relayBucket.backOff() : bucketOf(mail.domain).backOff();
+            if (slowedDown) {
+                logger.warn("SMTP throttling for {} ({}), reducing send rate",
+                        replyCode < 0 ? "relay" : mail.domain, e.getMessage());
+            }
+        }
+        retried.incrementAndGet();
+        long backoffMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(mail.attempts - 1, 20));
+        // Gigue pour ne pas relancer tous les messages d'un domaine en même temps
+        backoffMs = backoffMs / 2 + ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+        logger.debug("Retrying email to {} in {} ms (attempt {}): {}",
+                recipientsOf(mail.message), backoffMs, mail.attempts, e.getMessage());
+        reschedule(mail, TimeUnit.MILLISECONDS.toNanos(backoffMs));
+    }
+
+    private TokenBucket bucketOf(String domain) {
+        return domainBuckets.computeIfAbsent(domain, d -> new TokenBucket(domainRate, domainBurst));
+    }
+
+    private void reschedule(OutboundMail mail, long delayNanos) {
+        mail.readyAt = System.nanoTime() + delayNanos;
+        scheduled.add(mail);
+    }
+
+    private static int replyCode(MessagingException e) {
+        Exception cause = e;
+        for (int depth = 0; cause != null && depth < 10; depth++) {
+            if (cause instanceof SMTPSendFailedException) {
+                return ((SMTPSendFailedException) cause).getReturnCode();
+            }
+            if (cause instanceof SMTPAddressFailedException) {
+                return ((SMTPAddressFailedException) cause).getReturnCode();
+            }
+            cause = cause instanceof MessagingException ? ((MessagingException) cause).getNextException() : null;
+        }
+        return -1;
+    }
+
+    private static String domainOf(MimeMessage message) {
+        try {
+            Address[] recipients = message.getAllRecipients();
+            if (recipients != null && recipients.length > 0 && recipients[0] instanceof InternetAddress) {
+                String address = ((InternetAddress) recipients[0]).getAddress();
+                int at = address.lastIndexOf('@');
+                if (at >= 0) {
+                    return address.substring(at + 1).toLowerCase();
+                }
+            }
+        } catch (MessagingException e) {
+            logger.debug("Cannot read recipients: {}", e.getMessage());
+        }
+        return "";
+    }
+
+    private static String recipientsOf(MimeMessage message) {
+        try {
+            Address[] recipients = message.getAllRecipients();
+            return recipients == null || recipients.length == 0 ? "?" : recipients[0].toString();
+        } catch (MessagingException e) {
+            return "?";
+        }
+    }
+
+    private void report() {
+        synchronized (relayBucket) {
+            long now = System.nanoTime();
+            domainBuckets.values().removeIf(bucket -> {
+                bucket.refill(now);
+                return bucket.isIdle();
+            });
+        }
+        if (getQueueDepth() > 0 || throttled.get() > 0 || retried.get() > 0) {
+            logger.info("Outbound mail queue: depth {}/{}, sent {}, throttled {}, retried {}, failed {}",
+                    getQueueDepth(), maxSize, sent.get(), throttled.get(), retried.get(), failed.get());
+        }
+    }
+
+    /**
+     * Number of messages accepted and not yet sent or given up, including the ones
+     * waiting for a token or a retry.
+     */
+    public int getQueueDepth() {
+        return maxSize - capacity.availablePermits();
+    }
+
+    public int getRemainingCapacity() {
+        return capacity.availablePermits();
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public void close() {
+        isActive = false;
+        reporter.shutdownNow();
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(10, TimeUnit.SECONDS)) {
+                senders.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            senders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (!scheduled.isEmpty()) {
+            logger.warn("Outbound mail queue closed with {} unsent emails", scheduled.size());
+            IllegalStateException closed = new IllegalStateException("Outbound mail queue closed before sending");
+            for (OutboundMail mail : scheduled) {
+                mail.result.completeExceptionally(closed);
+            }
+        }
+        logger.info("Outbound mail queue closed");
+    }
+}
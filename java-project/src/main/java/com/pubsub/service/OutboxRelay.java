@@ -0,0 +1,266 @@
+package com.pubsub.service;
+
+import com.pubsub.config.KafkaConfig;
+import com.pubsub.event.ContentEvent;
+import com.pubsub.event.ContentEventCodec;
+import com.pubsub.matching.KeywordShards;
+import com.pubsub.model.OutboxEvent;
+import com.pubsub.repository.OutboxEventRepository;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Drains the content outbox to Kafka when {@code app.publisher.outbox.enabled} is
+ * set. Events are read in id order by batches, all sent with the idempotent
+ * producer, then deleted once acknowledged; an event that could not be sent stays
+ * in the outbox and is retried on the next pass. Delivery is at least once: a
+ * crash between the ack and the delete sends the event again. A single relay must
+ * run per database. Payloads are stored as JSON and converted to the binary wire
+ * format when {@code app.content.wire-format=binary}, without their body in
+ * claim-check mode (see {@link ContentBodyStore}). With sharded routing a
+ * reference to the event (without its body) is also sent to its keyword shards,
+ * and the event is deleted once all its records are acknowledged. An event that
+ * cannot be sent at all, because its payload does not decode or the producer
+ * rejects it outright, is marked failed and left in the outbox table; the rest of
+ * the batch is relayed as usual.
+ */
+@Service
+public class OutboxRelay implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+    private static final long ERROR_BACKOFF_MS = 5000;
+
+    private final OutboxEventRepository outboxRepository;
+    private final KafkaConfig kafkaConfig;
+    private final ContentBodyStore contentBodies;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final KafkaProducer<String, byte[]> producer;
+    private final ContentEventCodec codec;
+    private final ContentEventCodec.Format wireFormat;
+    private final ExecutorService relayThread;
+    // Publications en attente d'acquittement, par id d'événement
+    private final Map<Long, CompletableFuture<PublishResult>> pending = new ConcurrentHashMap<>();
+    private final Semaphore signal = new Semaphore(0);
+    private volatile boolean isActive;
+
+    @Autowired
+    public OutboxRelay(OutboxEventRepository outboxRepository,
+                       KafkaConfig kafkaConfig,
+                       ContentBodyStore contentBodies,
+                       @Value("${app.publisher.outbox.enabled:false}") boolean enabled,
+                       @Value("${app.publisher.outbox.batch-size:500}") int batchSize,
+                       @Value("${app.publisher.outbox.poll-interval-ms:200}") long pollIntervalMs,
+                       @Value("${app.content.wire-format:binary}") String wireFormat) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaConfig = kafkaConfig;
+        this.contentBodies = contentBodies;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.pollIntervalMs = pollIntervalMs;
+        this.codec = new ContentEventCodec();
+        this.wireFormat = ContentEventCodec.Format.parse(wireFormat);
+        this.isActive = true;
+
+        if (enabled) {
+            this.producer = new KafkaProducer<>(kafkaConfig.getProducerProps(),
+                    new StringSerializer(), new ByteArraySerializer());
+            this.relayThread = Executors.newSingleThreadExecutor();
+            relayThread.submit(this::relayLoop);
+            logger.info("Outbox relay started: batches of {}, polling every {} ms", this.batchSize, pollIntervalMs);
+        } else {
+            this.producer = null;
+            this.relayThread = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a future completed when the event is acknowledged by Kafka. Must be
+     * called before the event's transaction commits, so the relay cannot send it first.
+     */
+    public CompletableFuture<PublishResult> track(OutboxEvent event) {
+        return pending.computeIfAbsent(event.getId(), id -> new CompletableFuture<>());
+    }
+
+    /**
+     * Fails the futures of events whose transaction did not commit.
+     */
+    public void untrack(Collection<OutboxEvent> events, Throwable cause) {
+        for (OutboxEvent event : events) {
+            CompletableFuture<PublishResult> future = pending.remove(event.getId());
+            if (future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Wakes the relay up after new events were committed.
+     */
+    public void wakeUp() {
+        if (signal.availablePermits() == 0) {
+            signal.release();
+        }
+    }
+
+    private void relayLoop() {
+        while (isActive) {
+            try {
+                if (relayBatch() < batchSize) {
+                    signal.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    signal.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Error relaying outbox events: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(ERROR_BACKOFF_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the oldest events and deletes the acknowledged ones. Returns the number
+     * of events read.
+     */
+    private int relayBatch() throws InterruptedException {
+        List<OutboxEvent> events = outboxRepository.findAllByFailedAtIsNullOrderByIdAsc(PageRequest.of(0, batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // Tout envoyer avant d'attendre : le producer regroupe les enregistrements par partition
+        // Le premier acquittement de chaque événement est celui du topic de contenu
+        List<List<Future<RecordMetadata>>> acks = new ArrayList<>(events.size());
+        List<OutboxEvent> rejected = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            try {
+                acks.add(send(event));
+            } catch (RuntimeException e) {
+                if (!isActive) {
+                    // Producer fermé ou thread interrompu par close() : l'événement reste à envoyer
+                    throw e;
+                }
+                // Un nouvel essai échouerait de même : écarter l'événement plutôt que bloquer l'outbox
+                acks.add(null);
+                rejected.add(event);
+                event.markFailed(e.toString());
+                logger.error("Giving up on outbox event {} for {}: {}",
+                        event.getId(), event.getAggregateId(), e.getMessage(), e);
+                CompletableFuture<PublishResult> future = pending.remove(event.getId());
+                if (future != null) {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
+        if (!rejected.isEmpty()) {
+            outboxRepository.saveAll(rejected);
+        }
+
+        List<Long> sent = new ArrayList<>(events.size());
+        int failed = 0;
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            if (acks.get(i) == null) {
+                continue;
+            }
+            try {
+                RecordMetadata metadata = acks.get(i).get(0).get();
+                for (Future<RecordMetadata> shardAck : acks.get(i).subList(1, acks.get(i).size())) {
+                    shardAck.get();
+                }
+                sent.add(event.getId());
+                CompletableFuture<PublishResult> future = pending.remove(event.getId());
+                if (future != null) {
+                    future.complete(new PublishResult(event.getAggregateId(), metadata.partition(), metadata.offset()));
+                }
+            } catch (ExecutionException e) {
+                failed++;
+                logger.warn("Failed to relay outbox event {} for {}: {}",
+                        event.getId(), event.getAggregateId(), e.getCause().getMessage());
+            }
+        }
+
+        if (!sent.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(sent);
+        }
+        if (failed > 0) {
+            logger.warn("{} of {} outbox events not relayed, retrying in {} ms", failed, events.size(), ERROR_BACKOFF_MS);
+            Thread.sleep(ERROR_BACKOFF_MS);
+        } else {
+            logger.debug("Relayed {} outbox events", sent.size());
+        }
+        return events.size();
+    }
+
+    private List<Future<RecordMetadata>> send(OutboxEvent event) {
+        byte[] payload = event.getPayload().getBytes(StandardCharsets.UTF_8);
+        boolean contentEvent = kafkaConfig.getContentTopic().equals(event.getTopic());
+        boolean sharded = contentEvent && kafkaConfig.isShardedRouting();
+        byte[] wire = payload;
+        ContentEvent decoded = null;
+        // Le JSON stocké est envoyé tel quel s'il n'y a rien à convertir
+        if (wireFormat == ContentEventCodec.Format.BINARY || sharded || (contentEvent && contentBodies.isEnabled())) {
+            decoded = codec.decode(payload);
+            if (contentEvent) {
+                decoded = contentBodies.toWire(decoded);
+            }
+            wire = codec.encode(decoded, wireFormat);
+        }
+
+        List<Future<RecordMetadata>> acks = new ArrayList<>();
+        acks.add(producer.send(new ProducerRecord<>(event.getTopic(), event.getAggregateId(), wire)));
+        if (sharded) {
+            byte[] reference = decoded.isBodyOmitted() ? wire : codec.encode(decoded.withoutBody(), wireFormat);
+            for (int shard : KeywordShards.shardsOfContent(decoded.getKeywords(), kafkaConfig.getShardCount())) {
+                acks.add(producer.send(new ProducerRecord<>(kafkaConfig.getContentShardsTopic(), shard,
+                        event.getAggregateId(), reference)));
+            }
+        }
+        return acks;
+    }
+
+    @Override
+    public void close() {
+        isActive = false;
+        if (!enabled) {
+            return;
+        }
+        relayThread.shutdownNow();
+        try {
+            relayThread.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        producer.close();
+        IllegalStateException closed = new IllegalStateException("Outbox relay closed, event left in the outbox");
+        for (CompletableFuture<PublishResult> future : pending.values()) {
+            future.completeExceptionally(closed);
+        }
+        pending.clear();
+        logger.info("Outbox relay closed");
+    }
+}
@@ -0,0 +1,58 @@
+package com.pubsub.service;
+
+/**
+ * Outcome of a publish: the id of the content and, once Kafka acknowledged it,
+ * the partition and offset of its record on the content topic. A failed publish
+ * carries the error instead, with partition and offset set to -1.
+ */
+public class PublishResult {
+    private final String contentId;
+    private final int partition;
+    private final long offset;
+    private final Throwable error;
+
+    public PublishResult(String contentId, int partition, long offset) {
+        this(contentId, partition, offset, null);
+    }
+
+    private PublishResult(String contentId, int partition, long offset, Throwable error) {
+        this.contentId = contentId;
+        this.partition = partition;
+        this.offset = offset;
+        this.error = error;
+    }
+
+    public static PublishResult failed(String contentId, Throwable error) {
+        return new PublishResult(contentId, -1, -1, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    public String getContentId() {
+        return contentId;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return "PublishResult{" +
+                "contentId='" + contentId + '\'' +
+                ", partition=" + partition +
+                ", offset=" + offset +
+                (error != null ? ", error=" + error.getMessage() : "") +
+                '}';
+    }
+}
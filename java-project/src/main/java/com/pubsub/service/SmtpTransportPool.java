@@ -0,0 +1,233 @@
+package com.pubsub.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Pool of connected, authenticated SMTP transports shared by all email senders.
+ * A transport sends many messages over the same TCP/TLS connection instead of
+ * reconnecting and re-authenticating for each email, as
+ * {@link JavaMailSenderImpl#send} does. Idle transports are checked before reuse
+ * and closed once they stay idle too long or have sent their quota of messages.
+ */
+public class SmtpTransportPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+    // Au-delà de ce délai d'inactivité, vérifier la connexion (NOOP) avant de la réutiliser
+    private static final long VALIDATION_INTERVAL_MS = 10000;
+
+    private final JavaMailSenderImpl mailSender;
+    private final Semaphore permits;
+    private final BlockingDeque<PooledTransport> idle;
+    private final long maxIdleMs;
+    private final int maxMessagesPerConnection;
+    private final ScheduledExecutorService evictor;
+    private volatile boolean isActive;
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private int sent;
+        private volatile long lastUsed;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    public SmtpTransportPool(JavaMailSenderImpl mailSender, int maxSize, long maxIdleMs, int maxMessagesPerConnection) {
+        this.mailSender = mailSender;
+        this.permits = new Semaphore(Math.max(1, maxSize));
+        this.idle = new LinkedBlockingDeque<>();
+        this.maxIdleMs = maxIdleMs;
+        this.maxMessagesPerConnection = Math.max(1, maxMessagesPerConnection);
+        this.evictor = Executors.newSingleThreadScheduledExecutor();
+        this.evictor.scheduleWithFixedDelay(this::evictIdle, maxIdleMs, Math.max(1000, maxIdleMs / 2), TimeUnit.MILLISECONDS);
+        this.isActive = true;
+        logger.info("SMTP transport pool created: max {} connections, {} messages per connection, idle timeout {} ms",
+                maxSize, this.maxMessagesPerConnection, maxIdleMs);
+    }
+
+    /**
+     * Sends the message over a pooled connection, reconnecting once if the
+     * connection was lost. The SMTP error is rethrown as is, so callers can tell
+     * transient replies from permanent ones.
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        Exception error = sendBatch(Collections.singletonList(message)).get(0);
+        if (error instanceof MessagingException) {
+            throw (MessagingException) error;
+        }
+        if (error != null) {
+            throw (RuntimeException) error;
+        }
+    }
+
+    /**
+     * Sends the messages in order over a single pooled connection, reconnecting
+     * when it is lost or has reached its quota. Returns one entry per message:
+     * null if it was sent, otherwise the error it failed with, so that each
+     * message can be retried or given up on its own. Throws only if no connection
+     * could be obtained at all, in which case nothing was sent.
+     */
+    public List<Exception> sendBatch(List<MimeMessage> messages) throws MessagingException {
+        List<Exception> errors = new ArrayList<>(messages.size());
+        PooledTransport pooled = borrow();
+        try {
+            for (MimeMessage message : messages) {
+                if (pooled == null) {
+                    try {
+                        pooled = connect();
+                    } catch (MessagingException e) {
+                        // Relais injoignable : inutile de réessayer pour chaque message restant
+                        while (errors.size() < messages.size()) {
+                            errors.add(e);
+                        }
+                        break;
+                    }
+                }
+                try {
+                    if (pooled.sent >= maxMessagesPerConnection) {
+                        closeQuietly(pooled);
+                        pooled = null;
+                        pooled = connect();
+                    }
+                    prepare(message);
+                    try {
+                        pooled.transport.sendMessage(message, message.getAllRecipients());
+                    } catch (MessagingException e) {
+                        if (pooled.transport.isConnected()) {
+                            throw e;
+                        }
+                        closeQuietly(pooled);
+                        pooled = null;
+                        pooled = connect();
+                        pooled.transport.sendMessage(message, message.getAllRecipients());
+                    }
+                    pooled.sent++;
+                    errors.add(null);
+                } catch (MessagingException | RuntimeException e) {
+                    if (pooled != null && !pooled.transport.isConnected()) {
+                        closeQuietly(pooled);
+                        pooled = null;
+                    }
+                    errors.add(e);
+                }
+            }
+        } finally {
+            release(pooled);
+        }
+        return errors;
+    }
+
+    private static void prepare(MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        message.saveChanges();
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        if (!isActive) {
+            throw new MessagingException("SMTP transport pool is closed");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+
+        try {
+            PooledTransport pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isHealthy(pooled)) {
+                    return pooled;
+                }
+                closeQuietly(pooled);
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private boolean isHealthy(PooledTransport pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsed < VALIDATION_INTERVAL_MS) {
+            return true;
+        }
+        // isConnected() envoie un NOOP au serveur SMTP
+        return pooled.transport.isConnected();
+    }
+
+    private PooledTransport connect() throws MessagingException {
+        Session session = mailSender.getSession();
+        Transport transport = session.getTransport(mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp");
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        logger.debug("Opened new SMTP connection to {}:{}", mailSender.getHost(), mailSender.getPort());
+        return new PooledTransport(transport);
+    }
+
+    private void release(PooledTransport pooled) {
+        try {
+            if (pooled == null) {
+                return;
+            }
+            if (!isActive || pooled.sent >= maxMessagesPerConnection) {
+                closeQuietly(pooled);
+            } else {
+                pooled.lastUsed = System.currentTimeMillis();
+                // LIFO : les connexions chaudes sont réutilisées, les froides expirent
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictIdle() {
+        long limit = System.currentTimeMillis() - maxIdleMs;
+        Iterator<PooledTransport> iterator = idle.descendingIterator();
+        while (iterator.hasNext()) {
+            PooledTransport pooled = iterator.next();
+            if (pooled.lastUsed < limit && idle.removeFirstOccurrence(pooled)) {
+                closeQuietly(pooled);
+                logger.debug("Closed idle SMTP connection");
+            }
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    private void closeQuietly(PooledTransport pooled) {
+        if (pooled == null) {
+            return;
+        }
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        isActive = false;
+        evictor.shutdownNow();
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+        logger.info("SMTP transport pool closed");
+    }
+}
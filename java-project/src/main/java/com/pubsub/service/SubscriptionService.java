@@ -3,18 +3,28 @@ package com.pubsub.service;
 import com.pubsub.model.Subscription;
 import com.pubsub.repository.SubscriptionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.transaction.Transactional;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class SubscriptionService {
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionService.class);
     private final SubscriptionRepository subscriptionRepository;
 
+    // Cache des mots-clés par abonné, invalidé à chaque écriture
+    private final Map<String, Set<String>> keywordCache = new ConcurrentHashMap<>();
+    private final AtomicLong cacheGeneration = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
     @Autowired
     public SubscriptionService(SubscriptionRepository subscriptionRepository) {
         this.subscriptionRepository = subscriptionRepository;
@@ -27,6 +37,7 @@ public class SubscriptionService {
         if (existingSubscription.isPresent()) {
             return existingSubscription.get();
         }
+        evictAfterCommit(subscriberId);
 
         List<Subscription> userSubscriptions = subscriptionRepository.findBySubscriberId(subscriberId);
         Subscription subscription;
@@ -51,6 +62,7 @@ public class SubscriptionService {
         Optional<Subscription> subscriptionOpt = subscriptionRepository.findBySubscriberIdAndKeyword(subscriberId, keyword);
         
         if (subscriptionOpt.isPresent()) {
+            evictAfterCommit(subscriberId);
             Subscription subscription = subscriptionOpt.get();
             subscription.removeKeyword(keyword);
             
@@ -67,6 +79,7 @@ public class SubscriptionService {
 
     @Transactional
     public void deleteAllSubscriptions(String subscriberId) {
+        evictAfterCommit(subscriberId);
         subscriptionRepository.deleteBySubscriberId(subscriberId);
     }
 
@@ -74,12 +87,63 @@ public class SubscriptionService {
         return subscriptionRepository.findBySubscriberId(subscriberId);
     }
 
+    /**
+     * Returns the keywords of a subscriber from the in-memory cache, loading them from
+     * the database on a miss. The returned set is read-only.
+     */
     public Set<String> getSubscriberKeywords(String subscriberId) {
+        Set<String> cached = keywordCache.get(subscriberId);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+        cacheMisses.incrementAndGet();
+
+        long generation = cacheGeneration.get();
         List<Subscription> subscriptions = subscriptionRepository.findBySubscriberId(subscriberId);
         Set<String> keywords = new HashSet<>();
         for (Subscription subscription : subscriptions) {
             keywords.addAll(subscription.getKeywords());
         }
-        return keywords;
+        Set<String> loaded = Collections.unmodifiableSet(keywords);
+
+        // Ne pas mettre en cache une lecture concurrente à une écriture
+        if (generation == cacheGeneration.get()) {
+            keywordCache.put(subscriberId, loaded);
+        }
+        return loaded;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    public double getCacheHitRatio() {
+        long hits = cacheHits.get();
+        long total = hits + cacheMisses.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    private void evictAfterCommit(String subscriberId) {
+        evict(subscriberId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(subscriberId);
+                }
+            });
+        }
+    }
+
+    private void evict(String subscriberId) {
+        cacheGeneration.incrementAndGet();
+        keywordCache.remove(subscriberId);
+        logger.debug("Keyword cache evicted for subscriber {} (hit ratio {})", subscriberId,
+                String.format("%.2f", getCacheHitRatio()));
     }
 }
@@ -2,13 +2,13 @@ package com.pubsub.service;
 
 import com.pubsub.model.User;
 import com.pubsub.repository.ContentRepository;
-import com.pubsub.repository.SubscriptionRepository;
 import com.pubsub.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,7 +21,7 @@ public class UserService {
     private ContentRepository contentRepository;
 
     @Autowired
-    private SubscriptionRepository subscriptionRepository;
+    private SubscriptionService subscriptionService;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
@@ -44,6 +44,11 @@ public class UserService {
         return userRepository.findByUsername(username);
     }
 
+    @Transactional
+    public void markSeen(String username, Instant seenAt) {
+        userRepository.updateLastSeenAt(username, seenAt);
+    }
+
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
@@ -54,7 +59,7 @@ public class UserService {
         contentRepository.deleteByPublisherId(userId);
         
         // Delete all subscriptions for this user
-        subscriptionRepository.deleteBySubscriberId(userId);
+        subscriptionService.deleteAllSubscriptions(userId);
         
         // Delete the user
         userRepository.deleteById(userId);
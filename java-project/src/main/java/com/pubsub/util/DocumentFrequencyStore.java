@@ -0,0 +1,295 @@
+package com.pubsub.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Number of published documents containing each term, for TF-IDF keyword scoring
+ * ({@code app.keywords.scoring=tfidf}). Terms are stored as 64-bit hashes in a
+ * primitive open-addressing table updated as content is published. Extraction
+ * reads an immutable snapshot taken every {@code app.keywords.df.snapshot-interval-ms},
+ * so it never waits for publishers; the snapshot is also written to
+ * {@code app.keywords.df.snapshot-path}, if set, and reloaded on startup.
+ * Counts cover the documents published through this node.
+ */
+@Component
+public class DocumentFrequencyStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentFrequencyStore.class);
+    private static final int FILE_MAGIC = 0x4B574446;
+    private static final int FILE_VERSION = 1;
+
+    private final boolean enabled;
+    private final Path snapshotPath;
+    private final ScheduledExecutorService snapshotter;
+    // Table vivante, protégée par le verrou de l'instance ; clé 0 pour une case libre
+    private long[] keys = new long[1024];
+    private int[] counts = new int[1024];
+    private int size;
+    private long documentCount;
+    private boolean dirty;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public DocumentFrequencyStore() {
+        this("frequency", "", 0);
+    }
+
+    @Autowired
+    public DocumentFrequencyStore(@Value("${app.keywords.scoring:frequency}") String scoring,
+                                  @Value("${app.keywords.df.snapshot-path:}") String snapshotPath,
+                                  @Value("${app.keywords.df.snapshot-interval-ms:60000}") long snapshotIntervalMs) {
+        this.enabled = "tfidf".equalsIgnoreCase(scoring);
+        this.snapshotPath = snapshotPath == null || snapshotPath.isBlank() ? null : Paths.get(snapshotPath);
+        if (!enabled) {
+            this.snapshotter = null;
+            return;
+        }
+
+        load();
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor();
+        if (snapshotIntervalMs > 0) {
+            snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMs, snapshotIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        logger.info("Document frequencies enabled: {} terms over {} documents, snapshot every {} ms",
+                size, documentCount, snapshotIntervalMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counts the distinct terms of a published document.
+     */
+    public void addDocument(String title, String body) {
+        if (!enabled || title == null || body == null) {
+            return;
+        }
+        TermCounter counter = KeywordExtractor.countTerms(title, body);
+        synchronized (this) {
+            for (int term = 0; term < counter.size(); term++) {
+                increment(counter.termKey(term));
+            }
+            documentCount++;
+            dirty = true;
+        }
+    }
+
+    private void increment(long key) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                counts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = 1;
+        if (++size * 3 > keys.length * 2) {
+            resize();
+        }
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics as of the last snapshot.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Publishes the current counts to readers, then writes them to the snapshot file.
+     */
+    public void snapshot() throws IOException {
+        Snapshot taken;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            taken = new Snapshot(keys.clone(), counts.clone(), size, documentCount);
+            dirty = false;
+        }
+        snapshot = taken;
+        if (snapshotPath != null) {
+            write(taken);
+        }
+        logger.debug("Document frequency snapshot: {} terms over {} documents", taken.size, taken.documentCount);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            logger.error("Error writing document frequency snapshot: {}", e.getMessage(), e);
+        }
+    }
+
+    private void write(Snapshot taken) throws IOException {
+        Path parent = snapshotPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Écriture dans un fichier temporaire puis renommage : jamais de fichier à moitié écrit
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(taken.documentCount);
+            out.writeInt(taken.size);
+            for (int i = 0; i < taken.keys.length; i++) {
+                if (taken.keys[i] != 0) {
+                    out.writeLong(taken.keys[i]);
+                    out.writeInt(taken.counts[i]);
+                }
+            }
+        }
+        Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized void load() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                logger.warn("Ignoring document frequency snapshot {} in an unknown format", snapshotPath);
+                return;
+            }
+            long documents = in.readLong();
+            int terms = in.readInt();
+            for (int i = 0; i < terms; i++) {
+                long key = in.readLong();
+                int count = in.readInt();
+                increment(key);
+                counts[find(key)] = count;
+            }
+            documentCount = documents;
+            snapshot = new Snapshot(keys.clone(), counts.clone(), size, documentCount);
+        } catch (IOException e) {
+            logger.warn("Cannot read document frequency snapshot {}: {}", snapshotPath, e.getMessage());
+            keys = new long[1024];
+            counts = new int[1024];
+            size = 0;
+            documentCount = 0;
+        }
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int slotOf(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    /**
+     * 64-bit hash of a term, never 0.
+     */
+    static long termKey(char[] chars, int offset, int length) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ chars[i]) * 0x100000001B3L;
+        }
+        // Finaliseur de MurmurHash3 : les bits bas servent d'index
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    @Override
+    public void close() {
+        if (snapshotter == null) {
+            return;
+        }
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotQuietly();
+        logger.info("DocumentFrequencyStore closed");
+    }
+
+    /**
+     * Immutable document frequencies, safe to read from any thread.
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new long[1], new int[1], 0, 0);
+
+        private final long[] keys;
+        private final int[] counts;
+        private final int size;
+        private final long documentCount;
+
+        private Snapshot(long[] keys, int[] counts, int size, long documentCount) {
+            this.keys = keys;
+            this.counts = counts;
+            this.size = size;
+            this.documentCount = documentCount;
+        }
+
+        public int getDocumentFrequency(long termKey) {
+            int mask = keys.length - 1;
+            for (int slot = slotOf(termKey, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == termKey) {
+                    return counts[slot];
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Smoothed inverse document frequency, 1 for a term in every document.
+         */
+        public double idf(long termKey) {
+            return Math.log((documentCount + 1.0) / (getDocumentFrequency(termKey) + 1.0)) + 1.0;
+        }
+
+        public int getTermCount() {
+            return size;
+        }
+
+        public long getDocumentCount() {
+            return documentCount;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.pubsub.util;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of extracted keywords, keyed by a 128-bit hash of the text as the
+ * tokenizer sees it: case, punctuation and whitespace that cannot change the
+ * result do not change the key. Entries are evicted least recently used first
+ * and once older than the maximum age. Returned sets are copies.
+ */
+final class KeywordCache {
+    private static final long SEED_1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_1 = 0x100000001B3L;
+    private static final long PRIME_2 = 0x87C37B91114253D5L;
+    // Symboles hors ASCII : séparateurs de mots et entre le titre et le corps
+    private static final int WORD_SEPARATOR = 0x80;
+    private static final int FIELD_SEPARATOR = 0x81;
+
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final Map<Key, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Dernier texte vu : un appel répété sur le même texte évite de recalculer l'empreinte
+    private volatile RecentText recent;
+
+    KeywordCache(int maxEntries, long maxAgeMs) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxAgeNanos = maxAgeMs > 0 ? maxAgeMs * 1_000_000L : Long.MAX_VALUE;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > KeywordCache.this.maxEntries || isExpired(eldest.getValue(), System.nanoTime())) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Returns a copy of the cached keywords, or null if absent, expired or computed
+     * with another stop-word table or other corpus statistics.
+     */
+    Set<String> get(Key key, Object stopWords, Object statistics) {
+        Entry entry = entries.get(key);
+        if (entry != null && (entry.stopWords != stopWords || entry.statistics != statistics
+                || isExpired(entry, System.nanoTime()))) {
+            entries.remove(key, entry);
+            evictions.incrementAndGet();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new HashSet<>(entry.keywords);
+    }
+
+    void put(Key key, Object stopWords, Object statistics, Set<String> keywords) {
+        entries.put(key, new Entry(new HashSet<>(keywords), stopWords, statistics, System.nanoTime()));
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt > maxAgeNanos;
+    }
+
+    /**
+     * Returns the key of the text, reusing the last one computed when the text is
+     * the same, as in retry loops.
+     */
+    Key keyOf(String title, String body, boolean normalize) {
+        RecentText last = recent;
+        if (last != null && last.normalized == normalize && last.title.equals(title) && last.body.equals(body)) {
+            return last.key;
+        }
+        Key key = fingerprint(title, body, normalize);
+        recent = new RecentText(title, body, normalize, key);
+        return key;
+    }
+
+    /**
+     * Fingerprint of the title and body. With {@code normalize}, only the token
+     * characters count: ASCII letters folded to lowercase, digits and dashes, runs
+     * of anything else reduced to one separator. Otherwise every character counts,
+     * for locales where the extractor lowercases the whole text first.
+     */
+    static Key fingerprint(String title, String body, boolean normalize) {
+        Hasher hasher = new Hasher();
+        hasher.addField(title, normalize);
+        if (normalize) {
+            hasher.add(FIELD_SEPARATOR, 8);
+        } else {
+            // Tout caractère peut apparaître : la longueur du titre délimite les champs
+            hasher.add(title.length() >>> 16, 16);
+            hasher.add(title.length() & 0xFFFF, 16);
+        }
+        hasher.addField(body, normalize);
+        return hasher.key();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getEvictions() {
+        return evictions.get();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static final class Hasher {
+        // Caractères ASCII tels que le tokenizer les voit, 0 pour un séparateur
+        private static final byte[] FOLD = new byte[128];
+
+        static {
+            for (char c = 'a'; c <= 'z'; c++) {
+                FOLD[c] = (byte) c;
+                FOLD[c - 'a' + 'A'] = (byte) c;
+            }
+            for (char c = '0'; c <= '9'; c++) {
+                FOLD[c] = (byte) c;
+            }
+            FOLD['-'] = '-';
+        }
+
+        private long h1 = SEED_1;
+        private long h2 = SEED_2;
+        // Symboles accumulés dans un mot de 64 bits, mélangés ensemble
+        private long block;
+        private int blockBits;
+        private long length;
+
+        void addField(String text, boolean normalize) {
+            if (!normalize) {
+                for (int i = 0, n = text.length(); i < n; i++) {
+                    add(text.charAt(i), 16);
+                }
+                return;
+            }
+            // Séparateur émis seulement avant le mot suivant : les blancs aux extrémités ne comptent pas
+            boolean separator = false;
+            boolean started = false;
+            for (int i = 0, n = text.length(); i < n; i++) {
+                char c = text.charAt(i);
+                int folded;
+                if (c < 128) {
+                    folded = FOLD[c];
+                } else if (c == '\u212A') {
+                    folded = 'k';
+                } else if (c == '\u0130') {
+                    // Minuscule "i" suivie d'un point combinant, qui sépare
+                    if (separator && started) {
+                        add(WORD_SEPARATOR, 8);
+                    }
+                    add('i', 8);
+                    started = true;
+                    separator = true;
+                    continue;
+                } else {
+                    folded = 0;
+                }
+                if (folded == 0) {
+                    separator = true;
+                    continue;
+                }
+                if (separator && started) {
+                    add(WORD_SEPARATOR, 8);
+                }
+                add(folded, 8);
+                started = true;
+                separator = false;
+            }
+        }
+
+        void add(int value, int bits) {
+            block = (block << bits) | value;
+            blockBits += bits;
+            if (blockBits == 64) {
+                mixBlock();
+            }
+        }
+
+        private void mixBlock() {
+            h1 = (h1 ^ block) * PRIME_1;
+            h2 = Long.rotateLeft(h2 ^ (block * PRIME_2), 31) * 5 + 0x52DCE729;
+            length += blockBits;
+            block = 0;
+            blockBits = 0;
+        }
+
+        Key key() {
+            if (blockBits > 0) {
+                mixBlock();
+            }
+            return new Key(mix(h1 ^ length), mix(h2 ^ length));
+        }
+
+        // Finaliseur de MurmurHash3
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+    static final class Key {
+        private final long high;
+        private final long low;
+
+        private Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return high == key.high && low == key.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high ^ low);
+        }
+    }
+
+    private static final class RecentText {
+        private final String title;
+        private final String body;
+        private final boolean normalized;
+        private final Key key;
+
+        private RecentText(String title, String body, boolean normalized, Key key) {
+            this.title = title;
+            this.body = body;
+            this.normalized = normalized;
+            this.key = key;
+        }
+    }
+
+    private static final class Entry {
+        private final Set<String> keywords;
+        private final Object stopWords;
+        private final Object statistics;
+        private final long createdAt;
+
+        private Entry(Set<String> keywords, Object stopWords, Object statistics, long createdAt) {
+            this.keywords = keywords;
+            this.stopWords = stopWords;
+            this.statistics = statistics;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -3,11 +3,16 @@ package com.pubsub.util;
 import opennlp.tools.tokenize.SimpleTokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -16,23 +21,79 @@ import java.util.stream.Collectors;
  * Optimized for performance in a containerized environment.
  */
 @Component
-public class KeywordExtractor {
+public class KeywordExtractor implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(KeywordExtractor.class);
     
     private static final int MIN_WORD_LENGTH = 3;
     private static final int MAX_WORD_LENGTH = 50;
     private static final int MAX_KEYWORDS = 5;
     private static final float TITLE_WEIGHT = 2.0f;
+    private static final int CACHE_REPORT_INTERVAL = 1000;
+    // En dessous, un lot est traité par le thread appelant ; c'est aussi la taille des feuilles
+    private static final int BATCH_LEAF_SIZE = 16;
     
+    private static final Set<String> LOCALE_LOWERCASE = Set.of("tr", "az", "lt");
     private static final Pattern CLEANUP_PATTERN = Pattern.compile("[^a-zA-Z0-9\\s-]");
     private static final SimpleTokenizer tokenizer = SimpleTokenizer.INSTANCE;
     
     private static final Set<String> STOP_WORDS = ConcurrentHashMap.newKeySet();
+    // Tampons de travail réutilisés par chaque thread
+    private static final ThreadLocal<TermCounter> TERM_COUNTER = ThreadLocal.withInitial(
+            () -> new TermCounter(MIN_WORD_LENGTH, MAX_WORD_LENGTH, MAX_KEYWORDS));
+    // Mots vides indexés par caractères, reconstruits si l'ensemble change
+    private static volatile TermCounter.StopWords stopWordTable = new TermCounter.StopWords(Collections.emptySet());
+
+    // Cache optionnel des extractions, null s'il est désactivé
+    private final KeywordCache cache;
+    // Pool à vol de tâches des extractions par lot, créé au premier lot qui le justifie
+    private final int batchParallelism;
+    private volatile ForkJoinPool batchPool;
+    private boolean closed;
+    // Fréquences documentaires du score TF-IDF, null pour le score par fréquence
+    private final DocumentFrequencyStore documentFrequencies;
+
+    /**
+     * A title and body to extract keywords from in a batch.
+     */
+    public static final class Document {
+        private final String title;
+        private final String body;
+
+        public Document(String title, String body) {
+            this.title = title;
+            this.body = body;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+
+    public KeywordExtractor() {
+        this(false, 0, 0, 0, null);
+    }
+
+    @Autowired
+    public KeywordExtractor(@Value("${app.keywords.cache.enabled:false}") boolean cacheEnabled,
+                            @Value("${app.keywords.cache.max-entries:1000}") int cacheMaxEntries,
+                            @Value("${app.keywords.cache.max-age-ms:3600000}") long cacheMaxAgeMs,
+                            @Value("${app.keywords.batch.parallelism:0}") int batchParallelism,
+                            DocumentFrequencyStore documentFrequencies) {
+        this.cache = cacheEnabled ? new KeywordCache(cacheMaxEntries, cacheMaxAgeMs) : null;
+        this.batchParallelism = batchParallelism > 0 ? batchParallelism : Runtime.getRuntime().availableProcessors();
+        this.documentFrequencies = documentFrequencies != null && documentFrequencies.isEnabled()
+                ? documentFrequencies : null;
+    }
     
     @PostConstruct
     public void init() {
         initializeStopWords();
-        logger.info("KeywordExtractor initialized with {} stop words", STOP_WORDS.size());
+        logger.info("KeywordExtractor initialized with {} stop words, {} scoring{}", STOP_WORDS.size(),
+                documentFrequencies != null ? "TF-IDF" : "frequency", cache != null ? ", caching extractions" : "");
     }
     
     private void initializeStopWords() {
@@ -68,6 +129,14 @@ public class KeywordExtractor {
     /**
      * Extracts keywords from title and content with improved performance.
      * Title words are given higher weight in the frequency calculation.
+     * Text is tokenized in a single pass into a reusable per-thread table; the
+     * result is the same as the regex and OpenNLP pipeline, which is only used
+     * for the rare inputs whose ties that table cannot order. When
+     * {@code app.keywords.cache.enabled} is set, texts already seen (up to case,
+     * punctuation and spacing) are answered from a bounded cache. With
+     * {@code app.keywords.scoring=tfidf}, each term's weight is multiplied by its
+     * inverse document frequency over the published contents, read from the last
+     * snapshot of the {@link DocumentFrequencyStore}.
      *
      * @param title the content title
      * @param content the main content
@@ -80,21 +149,26 @@ public class KeywordExtractor {
                 return Collections.emptySet();
             }
 
-            // Clean and normalize the text
-            String cleanTitle = cleanText(title);
-            String cleanContent = cleanText(content);
-
-            // Process title and content separately with different weights
-            Map<String, Double> weightedFreq = new HashMap<>();
-            processText(cleanTitle, weightedFreq, TITLE_WEIGHT);
-            processText(cleanContent, weightedFreq, 1.0f);
+            TermCounter.StopWords stopWords = stopWords();
+            // Ces langues changent la minuscule de I : passer par String.toLowerCase()
+            boolean localeLowercase = LOCALE_LOWERCASE.contains(Locale.getDefault().getLanguage());
+            DocumentFrequencyStore.Snapshot statistics =
+                    documentFrequencies != null ? documentFrequencies.getSnapshot() : null;
+            if (cache == null) {
+                return extract(title, content, stopWords, localeLowercase, statistics);
+            }
 
-            // Select top keywords
-            return weightedFreq.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                .limit(MAX_KEYWORDS)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
+            KeywordCache.Key key = cache.keyOf(title, content, !localeLowercase);
+            Set<String> keywords = cache.get(key, stopWords, statistics);
+            if (keywords == null) {
+                keywords = extract(title, content, stopWords, localeLowercase, statistics);
+                cache.put(key, stopWords, statistics, keywords);
+            }
+            if ((cache.getHits() + cache.getMisses()) % CACHE_REPORT_INTERVAL == 0) {
+                logger.info("Keyword cache: {} entries, hit ratio {}, {} evictions",
+                        cache.size(), String.format("%.2f", getCacheHitRatio()), cache.getEvictions());
+            }
+            return keywords;
 
         } catch (Exception e) {
             logger.error("Error extracting keywords: {}", e.getMessage());
@@ -102,6 +176,157 @@ public class KeywordExtractor {
         }
     }
 
+    /**
+     * Extracts the keywords of many documents at once, spread over a work-stealing
+     * pool ({@code app.keywords.batch.parallelism} threads, one per core by
+     * default). Each worker reuses its own scratch table. Returns one set per
+     * document, in the same order; a null document gives an empty set. The pool
+     * is created by the first batch large enough to be split, and shut down by
+     * {@link #close()}; batches after that run on the calling thread.
+     */
+    public List<Set<String>> extractKeywordsBatch(List<Document> documents) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Set<String>[] results = new Set[documents.size()];
+        BatchTask task = new BatchTask(documents, results, 0, documents.size());
+        ForkJoinPool pool = documents.size() <= BATCH_LEAF_SIZE ? null : batchPool();
+        if (pool == null) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        return Arrays.asList(results);
+    }
+
+    // Null une fois l'extracteur fermé
+    private ForkJoinPool batchPool() {
+        ForkJoinPool pool = batchPool;
+        if (pool == null) {
+            synchronized (this) {
+                if (batchPool == null && !closed) {
+                    batchPool = new ForkJoinPool(batchParallelism);
+                }
+                pool = batchPool;
+            }
+        }
+        return pool;
+    }
+
+    private final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Document> documents;
+        private final Set<String>[] results;
+        private final int from;
+        private final int to;
+
+        private BatchTask(List<Document> documents, Set<String>[] results, int from, int to) {
+            this.documents = documents;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_LEAF_SIZE) {
+                for (int i = from; i < to; i++) {
+                    Document document = documents.get(i);
+                    results[i] = document == null
+                            ? new HashSet<>()
+                            : extractKeywords(document.getTitle(), document.getBody());
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(documents, results, from, middle),
+                    new BatchTask(documents, results, middle, to));
+        }
+    }
+
+    private Set<String> extract(String title, String content, TermCounter.StopWords stopWords,
+                                boolean localeLowercase, DocumentFrequencyStore.Snapshot statistics) {
+        TermCounter counter = count(title, content, stopWords, localeLowercase);
+        if (statistics != null) {
+            // Poids non entiers : l'ordre des ex æquo du pipeline de référence n'a plus de sens
+            counter.applyIdf(statistics);
+        } else if (counter.hasCollisions()) {
+            logger.debug("Hash collisions among {} terms, extracting keywords with the tokenizer", counter.size());
+            return extractWithTokenizer(title, content);
+        }
+
+        Set<String> keywords = new HashSet<>();
+        counter.addTopTerms(keywords);
+        return keywords;
+    }
+
+    /**
+     * Counts the terms of the text into this thread's scratch table, valid until the
+     * next extraction on the same thread.
+     */
+    static TermCounter countTerms(String title, String content) {
+        return count(title, content, stopWords(), LOCALE_LOWERCASE.contains(Locale.getDefault().getLanguage()));
+    }
+
+    private static TermCounter count(String title, String content, TermCounter.StopWords stopWords,
+                                     boolean localeLowercase) {
+        TermCounter counter = TERM_COUNTER.get();
+        counter.reset();
+        counter.add(localeLowercase ? title.toLowerCase() : title, TITLE_WEIGHT, stopWords);
+        counter.add(localeLowercase ? content.toLowerCase() : content, 1.0f, stopWords);
+        return counter;
+    }
+
+    /**
+     * Share of extractions answered by the cache, 0 when it is disabled or unused.
+     */
+    public double getCacheHitRatio() {
+        long hits = getCacheHits();
+        long total = hits + getCacheMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public long getCacheHits() {
+        return cache != null ? cache.getHits() : 0;
+    }
+
+    public long getCacheMisses() {
+        return cache != null ? cache.getMisses() : 0;
+    }
+
+    public long getCacheEvictions() {
+        return cache != null ? cache.getEvictions() : 0;
+    }
+
+    public int getCacheSize() {
+        return cache != null ? cache.size() : 0;
+    }
+
+    private static TermCounter.StopWords stopWords() {
+        TermCounter.StopWords table = stopWordTable;
+        if (table.getSourceSize() != STOP_WORDS.size()) {
+            table = new TermCounter.StopWords(new ArrayList<>(STOP_WORDS));
+            stopWordTable = table;
+        }
+        return table;
+    }
+
+    private Set<String> extractWithTokenizer(String title, String content) {
+        // Clean and normalize the text
+        String cleanTitle = cleanText(title);
+        String cleanContent = cleanText(content);
+
+        // Process title and content separately with different weights
+        Map<String, Double> weightedFreq = new HashMap<>();
+        processText(cleanTitle, weightedFreq, TITLE_WEIGHT);
+        processText(cleanContent, weightedFreq, 1.0f);
+
+        // Select top keywords
+        return weightedFreq.entrySet().stream()
+            .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+            .limit(MAX_KEYWORDS)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toSet());
+    }
+
     private String cleanText(String text) {
         return CLEANUP_PATTERN.matcher(text.toLowerCase().trim())
             .replaceAll(" ")
@@ -123,4 +348,26 @@ public class KeywordExtractor {
                token.length() <= MAX_WORD_LENGTH && 
                !STOP_WORDS.contains(token);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void close() {
+        ForkJoinPool pool;
+        synchronized (this) {
+            closed = true;
+            pool = batchPool;
+            batchPool = null;
+        }
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.pubsub.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Reusable scratch space of {@link KeywordExtractor}: tokenizes text in one pass
+ * and sums the weight of each term in a primitive open-addressing table, without
+ * creating a string per token. Not thread-safe; one instance per thread.
+ *
+ * Tokens are those of the former pipeline (lowercase, characters outside
+ * {@code [a-z0-9-]} replaced by spaces, then OpenNLP's SimpleTokenizer): runs of
+ * letters, runs of digits and runs of dashes. Ties are ranked in the iteration
+ * order the former {@code HashMap<String, Double>} had, which the table simulates
+ * from the string hash codes; {@link #hasCollisions()} reports the rare inputs
+ * where that map would have used tree bins, for which the order is not simulated.
+ */
+final class TermCounter {
+    private static final int NONE = 0;
+    private static final int LETTER = 1;
+    private static final int DIGIT = 2;
+    private static final int DASH = 3;
+    // Au-delà, le HashMap de référence aurait converti le compartiment en arbre (ou redimensionné)
+    private static final int TREEIFY_CHAIN = 8;
+    private static final int MAX_RETAINED_CHARS = 1 << 20;
+
+    private final int minLength;
+    private final int maxLength;
+    private final char[] token;
+
+    // Termes dans l'ordre de première apparition
+    private char[] chars = new char[4096];
+    private int charCount;
+    private int[] termStart = new int[256];
+    private int[] termLength = new int[256];
+    private int[] termHash = new int[256];
+    private double[] termWeight = new double[256];
+    private int size;
+    // Index du terme + 1, 0 pour une case libre
+    private int[] slots = new int[512];
+
+    // Capacité qu'aurait le HashMap de référence après les mêmes appels à merge()
+    private int mapCapacity;
+    private boolean collisions;
+    private int[] bucketCounts = new int[64];
+    private final int[] ranked;
+
+    TermCounter(int minLength, int maxLength, int topCount) {
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.token = new char[maxLength];
+        this.ranked = new int[topCount];
+    }
+
+    void reset() {
+        if (chars.length > MAX_RETAINED_CHARS) {
+            chars = new char[4096];
+        }
+        if (size > 0) {
+            Arrays.fill(slots, 0);
+        }
+        charCount = 0;
+        size = 0;
+        mapCapacity = 0;
+        collisions = false;
+    }
+
+    /**
+     * Adds the weight of every valid token of the text. The text must already be
+     * lowercased when the default locale lowercases ASCII letters differently.
+     */
+    void add(String text, double weight, StopWords stopWords) {
+        int type = NONE;
+        int length = 0;
+        int hash = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            int charType;
+            if (c >= 'a' && c <= 'z') {
+                charType = LETTER;
+            } else if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+                charType = LETTER;
+            } else if (c >= '0' && c <= '9') {
+                charType = DIGIT;
+            } else if (c == '-') {
+                charType = DASH;
+            } else if (c == '\u212A') {
+                // Le signe kelvin se met en minuscule en 'k'
+                c = 'k';
+                charType = LETTER;
+            } else if (c == '\u0130') {
+                // 'İ' devient "i" suivi d'un point combinant, qui sépare les mots
+                if (type != LETTER) {
+                    if (type != NONE) {
+                        count(length, hash, weight, stopWords);
+                    }
+                    length = 0;
+                    hash = 0;
+                }
+                if (length < maxLength) {
+                    token[length] = 'i';
+                }
+                count(length + 1, 31 * hash + 'i', weight, stopWords);
+                type = NONE;
+                continue;
+            } else {
+                charType = NONE;
+            }
+
+            if (charType != type) {
+                if (type != NONE) {
+                    count(length, hash, weight, stopWords);
+                }
+                type = charType;
+                length = 0;
+                hash = 0;
+            }
+            if (charType != NONE) {
+                if (length < maxLength) {
+                    token[length] = c;
+                }
+                length++;
+                hash = 31 * hash + c;
+            }
+        }
+        if (type != NONE) {
+            count(length, hash, weight, stopWords);
+        }
+    }
+
+    private void count(int length, int hash, double weight, StopWords stopWords) {
+        if (length < minLength || length > maxLength || stopWords.contains(token, length, hash)) {
+            return;
+        }
+
+        // Même séquence de redimensionnements que HashMap.merge()
+        if (mapCapacity == 0) {
+            mapCapacity = 16;
+        } else if (size > mapCapacity / 4 * 3) {
+            checkBuckets(mapCapacity);
+            mapCapacity <<= 1;
+        }
+
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+        while (slots[slot] != 0) {
+            int term = slots[slot] - 1;
+            if (termHash[term] == hash && termLength[term] == length
+                    && Arrays.equals(chars, termStart[term], termStart[term] + length, token, 0, length)) {
+                termWeight[term] += weight;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, length, hash, weight);
+    }
+
+    private void insert(int slot, int length, int hash, double weight) {
+        if (size == termStart.length) {
+            int capacity = size * 2;
+            termStart = Arrays.copyOf(termStart, capacity);
+            termLength = Arrays.copyOf(termLength, capacity);
+            termHash = Arrays.copyOf(termHash, capacity);
+            termWeight = Arrays.copyOf(termWeight, capacity);
+        }
+        if (charCount + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+        }
+        System.arraycopy(token, 0, chars, charCount, length);
+        termStart[size] = charCount;
+        termLength[size] = length;
+        termHash[size] = hash;
+        termWeight[size] = weight;
+        charCount += length;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        int[] resized = new int[slots.length * 2];
+        int mask = resized.length - 1;
+        for (int term = 0; term < size; term++) {
+            int slot = spread(termHash[term]) & mask;
+            while (resized[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            resized[slot] = term + 1;
+        }
+        slots = resized;
+    }
+
+    /**
+     * Records whether the reference map would have chained at least
+     * {@value #TREEIFY_CHAIN} entries in one bucket at this capacity.
+     */
+    private void checkBuckets(int capacity) {
+        if (collisions) {
+            return;
+        }
+        if (bucketCounts.length < capacity) {
+            bucketCounts = new int[capacity];
+        } else {
+            Arrays.fill(bucketCounts, 0, capacity, 0);
+        }
+        for (int term = 0; term < size; term++) {
+            if (++bucketCounts[spread(termHash[term]) & (capacity - 1)] >= TREEIFY_CHAIN) {
+                collisions = true;
+                return;
+            }
+        }
+    }
+
+    boolean hasCollisions() {
+        if (mapCapacity > 0) {
+            checkBuckets(mapCapacity);
+        }
+        return collisions;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Key of the term in the {@link DocumentFrequencyStore}.
+     */
+    long termKey(int term) {
+        return DocumentFrequencyStore.termKey(chars, termStart[term], termLength[term]);
+    }
+
+    /**
+     * Multiplies the weight of every term by its inverse document frequency.
+     */
+    void applyIdf(DocumentFrequencyStore.Snapshot documentFrequencies) {
+        for (int term = 0; term < size; term++) {
+            termWeight[term] *= documentFrequencies.idf(termKey(term));
+        }
+    }
+
+    /**
+     * Adds the heaviest terms to the collection, heaviest first. Equal weights keep
+     * the reference map's iteration order: by bucket, and most recent first within
+     * a bucket since merge() inserts at the head of the chain.
+     */
+    void addTopTerms(Collection<String> target) {
+        int count = 0;
+        for (int term = 0; term < size; term++) {
+            // Tableau trié borné : pour quelques termes, plus simple qu'un tas
+            if (count == ranked.length && !ranksBefore(term, ranked[count - 1])) {
+                continue;
+            }
+            int position = count == ranked.length ? count - 1 : count++;
+            while (position > 0 && ranksBefore(term, ranked[position - 1])) {
+                ranked[position] = ranked[position - 1];
+                position--;
+            }
+            ranked[position] = term;
+        }
+        for (int i = 0; i < count; i++) {
+            target.add(new String(chars, termStart[ranked[i]], termLength[ranked[i]]));
+        }
+    }
+
+    private boolean ranksBefore(int a, int b) {
+        if (termWeight[a] != termWeight[b]) {
+            return termWeight[a] > termWeight[b];
+        }
+        int bucketA = spread(termHash[a]) & (mapCapacity - 1);
+        int bucketB = spread(termHash[b]) & (mapCapacity - 1);
+        return bucketA != bucketB ? bucketA < bucketB : a > b;
+    }
+
+    // Comme HashMap.hash()
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Stop words looked up by characters, so that tokens need no string.
+     */
+    static final class StopWords {
+        private final char[][] words;
+        private final int[] hashes;
+        private final int sourceSize;
+
+        StopWords(Collection<String> stopWords) {
+            int capacity = Integer.highestOneBit(Math.max(4, stopWords.size() * 4) - 1) << 1;
+            this.words = new char[capacity][];
+            this.hashes = new int[capacity];
+            this.sourceSize = stopWords.size();
+            for (String word : stopWords) {
+                int slot = spread(word.hashCode()) & (capacity - 1);
+                while (words[slot] != null) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                words[slot] = word.toCharArray();
+                hashes[slot] = word.hashCode();
+            }
+        }
+
+        int getSourceSize() {
+            return sourceSize;
+        }
+
+        boolean contains(char[] token, int length, int hash) {
+            int mask = words.length - 1;
+            for (int slot = spread(hash) & mask; words[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && Arrays.equals(words[slot], 0, words[slot].length, token, 0, length)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.pubsub.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.pubsub.event.ContentEvent;
+import com.pubsub.event.ContentEventCodec;
+import com.pubsub.model.Content;
+
+import java.util.*;
+
+/**
+ * Compares record sizes and encode/decode speed of the legacy JSON format (as
+ * written by Jackson from the {@link Content} entity) and the binary codec.
+ * Round trips and legacy compatibility are covered by {@code ContentEventCodecTest}.
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.pubsub.benchmark.ContentEventCodecBenchmark \
+ *     -Dexec.args="iterations=200000 body-length=2000"
+ * </pre>
+ */
+public class ContentEventCodecBenchmark {
+    public static void main(String[] args) throws Exception {
+        int iterations = 200000;
+        int bodyLength = 2000;
+        for (String arg : args) {
+            if (arg.startsWith("iterations=")) {
+                iterations = Integer.parseInt(arg.substring("iterations=".length()));
+            } else if (arg.startsWith("body-length=")) {
+                bodyLength = Integer.parseInt(arg.substring("body-length=".length()));
+            }
+        }
+
+        ContentEventCodec codec = new ContentEventCodec();
+        ObjectMapper legacyMapper = new ObjectMapper();
+        legacyMapper.registerModule(new JavaTimeModule());
+
+        Content content = new Content("Kafka Streams en production : retour d'expérience", body(bodyLength),
+                new HashSet<>(Arrays.asList("kafka", "streams", "java", "production", "monitoring")), "alice");
+        ContentEvent event = ContentEvent.from(content);
+        byte[] legacyJson = legacyMapper.writeValueAsBytes(content);
+        byte[] binary = codec.encodeBinary(event);
+        byte[] claimCheck = codec.encodeBinary(event.withoutBody());
+        System.out.printf("Record size: legacy JSON %d bytes, binary %d bytes (%.1f%%), claim check %d bytes%n",
+                legacyJson.length, binary.length, 100.0 * binary.length / legacyJson.length, claimCheck.length);
+
+        // Deux passes : la première sert de chauffe au JIT
+        for (int pass = 0; pass < 2; pass++) {
+            boolean report = pass == 1;
+            measure(report, "legacy JSON encode", iterations, () -> legacyMapper.writeValueAsBytes(content));
+            measure(report, "legacy JSON decode", iterations, () -> legacyMapper.readValue(legacyJson, Content.class));
+            measure(report, "binary encode", iterations, () -> codec.encodeBinary(event));
+            measure(report, "binary decode", iterations, () -> codec.decode(binary));
+            measure(report, "binary decode + toContent", iterations, () -> codec.decode(binary).toContent());
+            measure(report, "claim-check decode", iterations, () -> codec.decode(claimCheck));
+        }
+    }
+
+    private interface Operation {
+        Object run() throws Exception;
+    }
+
+    private static void measure(boolean report, String name, int iterations, Operation operation) throws Exception {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += System.identityHashCode(operation.run()) & 1;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (report) {
+            System.out.printf("%-28s %8.0f ns/op (%d)%n", name, (double) elapsed / iterations, checksum);
+        }
+    }
+
+    private static String body(int length) {
+        StringBuilder body = new StringBuilder(length);
+        String sentence = "Le flux est partitionné par clé et consommé par des workers ordonnés. ";
+        while (body.length() < length) {
+            body.append(sentence);
+        }
+        body.setLength(length);
+        return body.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package com.pubsub.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.pubsub.model.Content;
+import com.pubsub.service.EmailService;
+import com.pubsub.service.OutboundMailQueue;
+import com.pubsub.service.SmtpTransportPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Drives notification fan-out through {@link EmailService}, the outbound queue and
+ * the SMTP pool against a {@link FakeSmtpServer}, then reports throughput and the
+ * latency from submit to SMTP acceptance. Not a unit test: run it with
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.pubsub.benchmark.EmailThroughputBenchmark \
+ *     -Dexec.args="recipients=500 contents=10 latency-ms=5"
+ * </pre>
+ *
+ * Every option is a {@code key=value} argument; see {@link #DEFAULTS}.
+ */
+public class EmailThroughputBenchmark {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("recipients", "200");
+        DEFAULTS.put("contents", "10");
+        DEFAULTS.put("domains", "5");
+        DEFAULTS.put("producers", "4");
+        DEFAULTS.put("latency-ms", "2");
+        DEFAULTS.put("transient-failure-rate", "0");
+        DEFAULTS.put("permanent-failure-rate", "0");
+        DEFAULTS.put("pool-size", "4");
+        DEFAULTS.put("senders", "4");
+        DEFAULTS.put("queue-capacity", "1000");
+        DEFAULTS.put("domain-rate", "100000");
+        DEFAULTS.put("relay-rate", "100000");
+        DEFAULTS.put("warmup-contents", "2");
+        DEFAULTS.put("timeout-s", "300");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0 || !DEFAULTS.containsKey(arg.substring(0, eq))) {
+                System.err.println("Unknown option " + arg + ", expected one of " + DEFAULTS.keySet());
+                System.exit(1);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        System.out.println("Options: " + options);
+
+        try (FakeSmtpServer server = new FakeSmtpServer(0, intOption(options, "latency-ms"),
+                doubleOption(options, "transient-failure-rate"), doubleOption(options, "permanent-failure-rate")).start()) {
+            JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+            mailSender.setHost("localhost");
+            mailSender.setPort(server.getPort());
+            Properties props = mailSender.getJavaMailProperties();
+            props.put("mail.smtp.auth", "false");
+            props.put("mail.smtp.starttls.enable", "false");
+
+            SmtpTransportPool pool = new SmtpTransportPool(mailSender, intOption(options, "pool-size"), 60000, 100);
+            double domainRate = doubleOption(options, "domain-rate");
+            double relayRate = doubleOption(options, "relay-rate");
+            OutboundMailQueue queue = new OutboundMailQueue(pool, intOption(options, "queue-capacity"),
+                    intOption(options, "senders"), domainRate, (int) Math.min(Integer.MAX_VALUE, domainRate),
+                    relayRate, (int) Math.min(Integer.MAX_VALUE, relayRate), 5, 50, 1000);
+            EmailService emailService = new EmailService();
+            ReflectionTestUtils.setField(emailService, "mailSender", mailSender);
+            ReflectionTestUtils.setField(emailService, "outboundQueue", queue);
+
+            try {
+                run(emailService, queue, server, options, "warmup", intOption(options, "warmup-contents"), false);
+                server.reset();
+                run(emailService, queue, server, options, "run", intOption(options, "contents"), true);
+            } finally {
+                queue.close();
+                pool.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(EmailService emailService, OutboundMailQueue queue, FakeSmtpServer server,
+                            Map<String, String> options, String phase, int contentCount, boolean report)
+            throws InterruptedException {
+        int recipients = intOption(options, "recipients");
+        int domains = Math.max(1, intOption(options, "domains"));
+        int producers = Math.max(1, intOption(options, "producers"));
+        long failedBefore = queue.getFailedCount();
+
+        List<Content> contents = new ArrayList<>();
+        for (int c = 0; c < contentCount; c++) {
+            Content content = new Content("Benchmark " + phase + " " + c, body(c),
+                    new HashSet<>(Arrays.asList("java", "kafka", "benchmark")), "bench-publisher");
+            content.setId(phase + "-" + c);
+            contents.add(content);
+        }
+
+        // Une adresse distincte par message pour mesurer la latence de chacun
+        Map<String, Long> submittedAt = new ConcurrentHashMap<>();
+        ExecutorService producerPool = Executors.newFixedThreadPool(producers);
+        Set<String> matched = Collections.singleton("java");
+        long start = System.nanoTime();
+        for (Content content : contents) {
+            for (int p = 0; p < producers; p++) {
+                int first = p;
+                producerPool.execute(() -> {
+                    for (int r = first; r < recipients; r += producers) {
+                        String recipient = "user" + r + "." + content.getId() + "@domain" + (r % domains) + ".test";
+                        submittedAt.put(recipient, System.nanoTime());
+                        emailService.sendContentNotification(recipient, content, matched);
+                    }
+                });
+            }
+        }
+        producerPool.shutdown();
+        producerPool.awaitTermination(1, TimeUnit.HOURS);
+
+        long total = (long) recipients * contentCount;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(intOption(options, "timeout-s"));
+        while (server.getAcceptedCount() + (queue.getFailedCount() - failedBefore) < total
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (!report) {
+            return;
+        }
+
+        long[] latencies = new long[submittedAt.size()];
+        int count = 0;
+        for (Map.Entry<String, Long> entry : submittedAt.entrySet()) {
+            Long accepted = server.getAcceptedAt(entry.getKey());
+            if (accepted != null) {
+                latencies[count++] = accepted - entry.getValue();
+            }
+        }
+        Arrays.sort(latencies, 0, count);
+
+        System.out.printf("Messages: %d submitted, %d accepted, %d given up, %d SMTP rejections, %d SMTP sessions%n",
+                total, server.getAcceptedCount(), queue.getFailedCount() - failedBefore,
+                server.getRejectedCount(), server.getSessionCount());
+        System.out.printf("Throughput: %.1f msgs/sec over %.2f s%n",
+                server.getAcceptedCount() / (elapsed / 1e9), elapsed / 1e9);
+        System.out.printf("Submit-to-accept latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                percentile(latencies, count, 0.50), percentile(latencies, count, 0.99), percentile(latencies, count, 1.0));
+        System.out.printf("Queue: throttled %d, retried %d%n", queue.getThrottledCount(), queue.getRetriedCount());
+    }
+
+    private static double percentile(long[] sorted, int count, double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(count - 1, Math.ceil(quantile * count) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static String body(int seed) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            body.append("Paragraph ").append(seed).append('.').append(i)
+                    .append(" about java, kafka and email delivery throughput. ");
+        }
+        return body.toString();
+    }
+
+    private static int intOption(Map<String, String> options, String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private static double doubleOption(Map<String, String> options, String name) {
+        return Double.parseDouble(options.get(name));
+    }
+}
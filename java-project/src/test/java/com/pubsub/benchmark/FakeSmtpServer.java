@@ -0,0 +1,185 @@
+package com.pubsub.benchmark;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process SMTP sink for measuring the email path offline. It speaks
+ * just enough plain SMTP for JavaMail (no TLS, any AUTH accepted), discards the
+ * message bodies and records when each recipient was accepted. A fixed latency
+ * can be added before every end-of-data reply, and a share of the messages can
+ * be rejected with a transient (451) or permanent (550) error.
+ */
+public class FakeSmtpServer implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final long latencyMs;
+    private final double transientFailureRate;
+    private final double permanentFailureRate;
+    private final Map<String, Long> acceptedAt = new ConcurrentHashMap<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong sessions = new AtomicLong();
+    private volatile boolean isActive;
+
+    public FakeSmtpServer(int port, long latencyMs, double transientFailureRate, double permanentFailureRate)
+            throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.connections = Executors.newCachedThreadPool();
+        this.latencyMs = latencyMs;
+        this.transientFailureRate = transientFailureRate;
+        this.permanentFailureRate = permanentFailureRate;
+    }
+
+    public FakeSmtpServer start() {
+        isActive = true;
+        Thread acceptor = new Thread(this::acceptLoop, "fake-smtp-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    private void acceptLoop() {
+        while (isActive) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.incrementAndGet();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (isActive) {
+                    System.err.println("Fake SMTP accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.ISO_8859_1));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.ISO_8859_1))) {
+            reply(out, "220 fake-smtp ready");
+            String recipient = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                        reply(out, "250-fake-smtp\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+                        break;
+                    case "HELO":
+                        reply(out, "250 fake-smtp");
+                        break;
+                    case "AUTH":
+                        reply(out, "235 accepted");
+                        break;
+                    case "MAIL":
+                        recipient = null;
+                        reply(out, "250 ok");
+                        break;
+                    case "RCPT":
+                        int open = line.indexOf('<');
+                        int close = line.indexOf('>', open + 1);
+                        recipient = open >= 0 && close > open ? line.substring(open + 1, close) : line.substring(4).trim();
+                        reply(out, "250 ok");
+                        break;
+                    case "DATA":
+                        reply(out, "354 end with <CRLF>.<CRLF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // Corps ignoré
+                        }
+                        endOfData(out, recipient);
+                        break;
+                    case "RSET":
+                        recipient = null;
+                        reply(out, "250 ok");
+                        break;
+                    case "NOOP":
+                        reply(out, "250 ok");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 bye");
+                        return;
+                    default:
+                        reply(out, "500 unknown command");
+                }
+            }
+        } catch (SocketException e) {
+            // Connexion fermée par le client ou à l'arrêt du serveur
+        } catch (IOException e) {
+            System.err.println("Fake SMTP session failed: " + e.getMessage());
+        }
+    }
+
+    private void endOfData(Writer out, String recipient) throws IOException {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        double draw = ThreadLocalRandom.current().nextDouble();
+        if (draw < permanentFailureRate) {
+            rejected.incrementAndGet();
+            reply(out, "550 mailbox unavailable");
+        } else if (draw < permanentFailureRate + transientFailureRate) {
+            rejected.incrementAndGet();
+            reply(out, "451 try again later");
+        } else {
+            if (recipient != null) {
+                acceptedAt.putIfAbsent(recipient, System.nanoTime());
+            }
+            accepted.incrementAndGet();
+            reply(out, "250 queued");
+        }
+    }
+
+    private static void reply(Writer out, String response) throws IOException {
+        out.write(response);
+        out.write("\r\n");
+        out.flush();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the System.nanoTime() at which the recipient's message was accepted, or null.
+     */
+    public Long getAcceptedAt(String recipient) {
+        return acceptedAt.get(recipient);
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getSessionCount() {
+        return sessions.get();
+    }
+
+    public void reset() {
+        acceptedAt.clear();
+        accepted.set(0);
+        rejected.set(0);
+        sessions.set(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        isActive = false;
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+}
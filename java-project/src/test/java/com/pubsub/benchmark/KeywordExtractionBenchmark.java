@@ -0,0 +1,303 @@
+package com.pubsub.benchmark;
+
+import com.pubsub.util.DocumentFrequencyStore;
+import com.pubsub.util.KeywordExtractor;
+import opennlp.tools.tokenize.SimpleTokenizer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Checks that {@link KeywordExtractor#extractKeywords} returns exactly what the
+ * former regex and OpenNLP pipeline returned (same keywords, same set iteration
+ * order) on a generated golden corpus, then compares time and bytes allocated
+ * per document. The same checks run with the extraction cache enabled, twice
+ * over the corpus and once over a reformatted copy of it (case, punctuation
+ * and spacing changed), which must be answered from the cache. Exits with
+ * status 1 on any mismatch. Finally the corpus is extracted as one batch, whose
+ * results must come back in order, and timed against a sequential loop.
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.pubsub.benchmark.KeywordExtractionBenchmark \
+ *     -Dexec.args="documents=5000 iterations=20000 seed=42"
+ * </pre>
+ */
+public class KeywordExtractionBenchmark {
+    private static final String[] WORDS = {
+            "kafka", "Kafka", "KAFKA", "streams", "java", "Java", "spring", "boot", "consumer", "producer",
+            "partition", "offset", "broker", "latence", "débit", "événement", "système", "données", "réseau",
+            "the", "and", "with", "les", "des", "pour", "dans", "très", "où", "être", "more", "new",
+            "covid-19", "e-mail", "2024", "v3", "x86_64", "C++", "node.js", "---", "--", "-", "a-b-c",
+            "\u0130stanbul", "\u212AELVIN", "Kelvin", "naïve", "café", "Straße", "ÆON", "ΣΟΦΟΣ", "中文", "🚀",
+            "it's", "l'article", "don't", "(test)", "[lien]", "\"citation\"", "fin.", "virgule,", "ok!",
+            "abc", "abcd", "xyz", "foo", "bar", "baz",
+            "supercalifragilisticexpialidocious-supercalifragilisticexpialidocious", "tab\tulation", "ligne\nsuivante"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int documents = 5000;
+        int iterations = 20000;
+        long seed = 42;
+        for (String arg : args) {
+            if (arg.startsWith("documents=")) {
+                documents = Integer.parseInt(arg.substring("documents=".length()));
+            } else if (arg.startsWith("iterations=")) {
+                iterations = Integer.parseInt(arg.substring("iterations=".length()));
+            } else if (arg.startsWith("seed=")) {
+                seed = Long.parseLong(arg.substring("seed=".length()));
+            }
+        }
+
+        KeywordExtractor extractor = new KeywordExtractor();
+        extractor.init();
+        @SuppressWarnings("unchecked")
+        Set<String> stopWords = (Set<String>) ReflectionTestUtils.getField(KeywordExtractor.class, "STOP_WORDS");
+        ReferenceExtractor reference = new ReferenceExtractor(stopWords);
+
+        KeywordExtractor cached = new KeywordExtractor(true, documents * 2, 0, 0, null);
+        cached.init();
+
+        List<String[]> corpus = corpus(documents, new Random(seed));
+        List<String[]> reformatted = new ArrayList<>(corpus.size());
+        for (String[] document : corpus) {
+            reformatted.add(new String[]{reformat(document[0]), reformat(document[1])});
+        }
+        int failures = check(reference, extractor, corpus)
+                + check(reference, cached, corpus)
+                + check(reference, cached, corpus);
+        long missesBefore = cached.getCacheMisses();
+        failures += check(reference, cached, reformatted);
+        if (cached.getCacheMisses() != missesBefore) {
+            failures++;
+            System.out.println((cached.getCacheMisses() - missesBefore) + " reformatted documents missed the cache");
+        }
+        if (failures > 0) {
+            System.out.println(failures + " mismatches");
+            System.exit(1);
+        }
+        System.out.printf("Golden corpus OK: %d documents, cache hit ratio %.2f (%d entries)%n",
+                corpus.size(), cached.getCacheHitRatio(), cached.getCacheSize());
+
+        List<KeywordExtractor.Document> batch = new ArrayList<>(corpus.size());
+        for (String[] document : corpus) {
+            batch.add(new KeywordExtractor.Document(document[0], document[1]));
+        }
+        List<Set<String>> batchResults = extractor.extractKeywordsBatch(batch);
+        for (int i = 0; i < corpus.size(); i++) {
+            List<String> expected = new ArrayList<>(reference.extractKeywords(corpus.get(i)[0], corpus.get(i)[1]));
+            if (!expected.equals(new ArrayList<>(batchResults.get(i)))) {
+                System.out.println("Batch mismatch at " + i + ": expected " + expected + ", got " + batchResults.get(i));
+                System.exit(1);
+            }
+        }
+        System.out.println("Batch OK on " + Runtime.getRuntime().availableProcessors() + " cores");
+
+        DocumentFrequencyStore frequencies = new DocumentFrequencyStore("tfidf", "", 0);
+        KeywordExtractor tfidf = new KeywordExtractor(false, 0, 0, 0, frequencies);
+        tfidf.init();
+        long start = System.nanoTime();
+        for (String[] document : corpus) {
+            frequencies.addDocument(document[0], document[1]);
+        }
+        long elapsed = System.nanoTime() - start;
+        frequencies.snapshot();
+        System.out.printf("Document frequencies: %d terms over %d documents, %.1f us per document%n",
+                frequencies.getSnapshot().getTermCount(), frequencies.getSnapshot().getDocumentCount(),
+                elapsed / 1000.0 / corpus.size());
+        String[] sample = corpus.stream().filter(document -> document[1].length() > 200).findFirst().orElseThrow();
+        System.out.println("TF-IDF sample: " + tfidf.extractKeywords(sample[0], sample[1])
+                + " (frequency: " + extractor.extractKeywords(sample[0], sample[1]) + ")");
+
+        String[] article = {
+                "Kafka Streams en production : retour d'expérience sur la latence",
+                body(new Random(seed), 400)
+        };
+        String[] other = {"Un autre article", body(new Random(seed + 1), 400)};
+        for (int pass = 0; pass < 2; pass++) {
+            boolean report = pass == 1;
+            int rounds = Math.max(1, iterations / corpus.size());
+            measure(report, "corpus, loop", rounds, () -> {
+                List<Set<String>> results = new ArrayList<>(batch.size());
+                for (KeywordExtractor.Document document : batch) {
+                    results.add(extractor.extractKeywords(document.getTitle(), document.getBody()));
+                }
+                return results;
+            });
+            // Les octets alloués ne comptent que le thread appelant, pas les workers du pool
+            measure(report, "corpus, batch", rounds, () -> extractor.extractKeywordsBatch(batch));
+            measure(report, "reference", iterations, () -> reference.extractKeywords(article[0], article[1]));
+            measure(report, "extractKeywords", iterations, () -> extractor.extractKeywords(article[0], article[1]));
+            measure(report, "tfidf", iterations, () -> tfidf.extractKeywords(article[0], article[1]));
+            measure(report, "cached", iterations, () -> cached.extractKeywords(article[0], article[1]));
+            // Deux textes en alternance : l'empreinte est recalculée à chaque appel
+            int[] calls = {0};
+            measure(report, "cached, 2 texts", iterations, () -> (calls[0]++ & 1) == 0
+                    ? cached.extractKeywords(article[0], article[1])
+                    : cached.extractKeywords(other[0], other[1]));
+        }
+        extractor.close();
+        cached.close();
+        tfidf.close();
+        frequencies.close();
+    }
+
+    private static int check(ReferenceExtractor reference, KeywordExtractor extractor, List<String[]> corpus) {
+        int failures = 0;
+        for (String[] document : corpus) {
+            List<String> expected = new ArrayList<>(reference.extractKeywords(document[0], document[1]));
+            List<String> actual = new ArrayList<>(extractor.extractKeywords(document[0], document[1]));
+            if (!expected.equals(actual)) {
+                if (failures++ < 10) {
+                    System.out.println("Mismatch for '" + document[0] + "': expected " + expected + ", got " + actual);
+                }
+            }
+        }
+        return failures;
+    }
+
+    // Même texte pour l'extracteur : casse, ponctuation et espacements changés
+    private static String reformat(String text) {
+        StringBuilder reformatted = new StringBuilder("  ");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'z' && i % 3 == 0) {
+                reformatted.append(Character.toUpperCase(c));
+            } else if (c == ' ') {
+                reformatted.append(" \t; ");
+            } else if (c == '.') {
+                reformatted.append('!');
+            } else {
+                reformatted.append(c);
+            }
+        }
+        return reformatted.append(" \n").toString();
+    }
+
+    private static List<String[]> corpus(int documents, Random random) {
+        List<String[]> corpus = new ArrayList<>(documents + 8);
+        // Cas limites : vides, sans mot valide, minuscules particulières, égalités, collisions
+        corpus.add(new String[]{"", ""});
+        corpus.add(new String[]{"   ", "\t\n"});
+        corpus.add(new String[]{"the and", "de la le"});
+        corpus.add(new String[]{"\u0130\u0130\u0130 \u0130stanbul", "\u212A\u212A\u212A \ufb01ne \u01c5emal"});
+        corpus.add(new String[]{"alpha beta gamma delta epsilon zeta eta theta", "iota kappa lambda omicron"});
+        corpus.add(new String[]{"Collisions", sameBucketWords(random, 12)});
+        corpus.add(new String[]{"Collisions", sameBucketWords(random, 40) + body(random, 100)});
+        for (int i = 0; i < documents; i++) {
+            corpus.add(new String[]{sentence(random, 1 + random.nextInt(10)), body(random, random.nextInt(300))});
+        }
+        return corpus;
+    }
+
+    // Mots qui tombent dans le même compartiment du HashMap jusqu'à 64 cases : il passe en arbre
+    private static String sameBucketWords(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int found = 0; found < count; ) {
+            char[] word = new char[3 + random.nextInt(6)];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = (char) ('a' + random.nextInt(26));
+            }
+            int hash = new String(word).hashCode();
+            if (((hash ^ (hash >>> 16)) & 63) == 0) {
+                words.append(word).append(' ');
+                found++;
+            }
+        }
+        return words.toString();
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(random.nextInt(8) == 0 ? ", " : " ");
+            }
+            sentence.append(random.nextInt(4) == 0 ? randomWord(random) : WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    private static String body(Random random, int words) {
+        StringBuilder body = new StringBuilder();
+        while (words > 0) {
+            int length = Math.min(words, 1 + random.nextInt(15));
+            body.append(sentence(random, length)).append(random.nextBoolean() ? ". " : ".\n");
+            words -= length;
+        }
+        return body.toString();
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[1 + random.nextInt(9)];
+        for (int i = 0; i < word.length; i++) {
+            int kind = random.nextInt(20);
+            word[i] = kind < 14 ? (char) ('a' + random.nextInt(26))
+                    : kind < 16 ? (char) ('A' + random.nextInt(26))
+                    : kind < 18 ? (char) ('0' + random.nextInt(10))
+                    : kind < 19 ? '-' : (char) (0xC0 + random.nextInt(0x40));
+        }
+        return new String(word);
+    }
+
+    private interface Operation {
+        Object run() throws Exception;
+    }
+
+    private static void measure(boolean report, String name, int iterations, Operation operation) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long checksum = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += System.identityHashCode(operation.run()) & 1;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        if (report) {
+            System.out.printf("%-16s %8.0f ns/op %8d bytes/op (%d)%n",
+                    name, (double) elapsed / iterations, allocated / iterations, checksum);
+        }
+    }
+
+    /**
+     * The former implementation of {@link KeywordExtractor#extractKeywords}.
+     */
+    private static final class ReferenceExtractor {
+        private static final Pattern CLEANUP_PATTERN = Pattern.compile("[^a-zA-Z0-9\\s-]");
+        private final Set<String> stopWords;
+
+        private ReferenceExtractor(Set<String> stopWords) {
+            this.stopWords = stopWords;
+        }
+
+        Set<String> extractKeywords(String title, String content) {
+            Map<String, Double> weightedFreq = new HashMap<>();
+            processText(cleanText(title), weightedFreq, 2.0f);
+            processText(cleanText(content), weightedFreq, 1.0f);
+            return weightedFreq.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                    .limit(5)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+        }
+
+        private String cleanText(String text) {
+            return CLEANUP_PATTERN.matcher(text.toLowerCase().trim())
+                    .replaceAll(" ")
+                    .replaceAll("\\s+", " ");
+        }
+
+        private void processText(String text, Map<String, Double> weightedFreq, float weight) {
+            for (String token : SimpleTokenizer.INSTANCE.tokenize(text)) {
+                if (token.length() >= 3 && token.length() <= 50 && !stopWords.contains(token)) {
+                    weightedFreq.merge(token, (double) weight, Double::sum);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.pubsub.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.pubsub.model.Content;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentEventCodecTest {
+    private final ContentEventCodec codec = new ContentEventCodec();
+
+    @Test
+    void roundTripsBinaryAndJson() {
+        for (ContentEvent sample : samples()) {
+            assertEquals(sample, codec.decode(codec.encodeBinary(sample)), "binary round trip");
+            assertEquals(sample, codec.decode(codec.encodeJson(sample)), "JSON round trip");
+        }
+    }
+
+    @Test
+    void decodesLegacyJson() throws Exception {
+        ObjectMapper legacyMapper = new ObjectMapper();
+        legacyMapper.registerModule(new JavaTimeModule());
+        // Enregistrement écrit par l'ancien producteur : Jackson sur l'entité Content
+        Content legacy = new Content("Ancien format", "Corps JSON", new HashSet<>(Arrays.asList("json", "legacy")), "bob");
+
+        ContentEvent decoded = codec.decode(legacyMapper.writeValueAsString(legacy).getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(ContentEvent.from(legacy), decoded);
+        assertEquals(legacy.getId(), decoded.toContent().getId());
+        assertEquals(legacy.getCreatedAt(), decoded.toContent().getCreatedAt());
+    }
+
+    @Test
+    void rejectsKeywordCountBeyondRecord() {
+        byte[] valid = codec.encodeBinary(new ContentEvent("id", "t", "b", null, "p", null));
+        // Dernier octet : nombre de mots-clés, remplacé par une varint de 2^28
+        byte[] corrupt = Arrays.copyOf(valid, valid.length + 4);
+        System.arraycopy(new byte[] {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01}, 0,
+                corrupt, valid.length - 1, 5);
+
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(corrupt));
+    }
+
+    @Test
+    void rejectsStringLengthBeyondRecord() {
+        byte[] corrupt = {ContentEventCodec.MAGIC, ContentEventCodec.VERSION, 0, (byte) 0xFF, (byte) 0xFF, 0x7F};
+
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(corrupt));
+    }
+
+    @Test
+    void rejectsNegativeLengths() {
+        // Varint sur 5 octets qui déborde en entier négatif
+        byte[] negativeString = {ContentEventCodec.MAGIC, ContentEventCodec.VERSION, 0,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        byte[] valid = codec.encodeBinary(new ContentEvent("id", "t", "b", null, "p", null));
+        byte[] negativeCount = Arrays.copyOf(valid, valid.length + 4);
+        System.arraycopy(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}, 0,
+                negativeCount, valid.length - 1, 5);
+
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(negativeString));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(negativeCount));
+    }
+
+    @Test
+    void deserializerSkipsTruncatedRecords() {
+        byte[] valid = codec.encodeBinary(samples().get(0));
+
+        for (int length = 1; length < valid.length; length++) {
+            assertNull(new ContentEventDeserializer().deserialize("content", Arrays.copyOf(valid, length)));
+        }
+    }
+
+    private static List<ContentEvent> samples() {
+        List<ContentEvent> samples = new ArrayList<>();
+        samples.add(ContentEvent.from(new Content("Titre", "Corps", new HashSet<>(Arrays.asList("a", "b")), "pub")));
+        samples.add(new ContentEvent("not-a-uuid", "", "", Collections.emptyList(), "", Instant.EPOCH));
+        samples.add(new ContentEvent("3F2504E0-4F89-11D3-9A0C-0305E82C3301", "Uppercase UUID id", "x",
+                Collections.singletonList("k"), "p", Instant.ofEpochSecond(-86400, 999999999)));
+        samples.add(new ContentEvent(null, null, null, null, null, null));
+        samples.add(new ContentEvent(UUID.randomUUID().toString(), "Unicode éè 中文 🚀",
+                "é".repeat(70000), Arrays.asList("café", "naïve", "🚀"), "éditeur", Instant.now()));
+        // Claim check : le corps est relu en base, seule l'indication voyage
+        samples.add(ContentEvent.from(new Content("Sans corps", "x".repeat(5000),
+                new HashSet<>(Arrays.asList("claim", "check")), "pub")).withoutBody());
+        return samples;
+    }
+}
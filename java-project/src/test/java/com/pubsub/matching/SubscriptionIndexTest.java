@@ -0,0 +1,135 @@
+package com.pubsub.matching;
+
+import com.pubsub.model.Content;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks {@link SubscriptionIndex} and its {@link AhoCorasick} automaton against
+ * the former per-subscription check: every part of the phrase contained in the
+ * lowercased content keyword, title or body.
+ */
+class SubscriptionIndexTest {
+    private static final String[] VOCABULARY = {
+            "kafka", "streams", "java", "spring boot", "consumer", "producer", "partition", "offset",
+            "latence", "débit", "événement", "système", "données", "réseau", "café", "naïve",
+            "ka", "af", "a", "ing", "str", "jav", "kafka streams", "java kafka", "boot spring",
+            "covid-19", "e-mail", "x86_64", "node.js", "c++", "2024", "v3", "中文", "🚀",
+            "istanbul", "\u0130stanbul", "\u212Aelvin", "kelvin", "stra\u00dfe"
+    };
+
+    @Test
+    void matchesLikeContainsCheck() {
+        Random random = new Random(42);
+        Map<String, Set<String>> subscriptions = new HashMap<>();
+        SubscriptionIndex index = new SubscriptionIndex();
+        for (int s = 0; s < 50; s++) {
+            String subscriber = "user" + s;
+            for (int k = random.nextInt(6); k > 0; k--) {
+                String keyword = random.nextInt(5) == 0 ? randomText(random, 1 + random.nextInt(2))
+                        : VOCABULARY[random.nextInt(VOCABULARY.length)];
+                keyword = random.nextBoolean() ? keyword.toUpperCase() : keyword;
+                index.add(subscriber, keyword);
+                subscriptions.computeIfAbsent(subscriber, id -> new HashSet<>()).add(keyword.trim().toLowerCase());
+            }
+        }
+
+        for (int c = 0; c < 2000; c++) {
+            Set<String> keywords = new HashSet<>();
+            for (int k = random.nextInt(4); k > 0; k--) {
+                keywords.add(randomText(random, 1));
+            }
+            Content content = new Content(randomText(random, 1 + random.nextInt(6)),
+                    randomText(random, random.nextInt(40)), keywords, "pub");
+
+            assertEquals(expectedMatches(subscriptions, content), index.match(content), content.getTitle());
+        }
+    }
+
+    @Test
+    void matchesEveryPartInTheSameField() {
+        SubscriptionIndex index = new SubscriptionIndex();
+        index.add("alice", "Kafka Streams");
+        index.add("bob", "kafka");
+        index.add("carol", "boot spring");
+
+        Content split = new Content("Kafka", "streams", Collections.singleton("other"), "pub");
+        Content together = new Content("Kafka in production", "Spring Boot and kafka-streams",
+                new HashSet<>(Arrays.asList("KafkaStreams")), "pub");
+
+        assertEquals(Map.of("bob", Set.of("kafka")), index.match(split));
+        assertEquals(Map.of("alice", Set.of("kafka streams"), "bob", Set.of("kafka"), "carol", Set.of("boot spring")),
+                index.match(together));
+    }
+
+    @Test
+    void forgetsRemovedSubscriptions() {
+        SubscriptionIndex index = new SubscriptionIndex();
+        index.add("alice", "kafka");
+        index.add("bob", "kafka");
+        index.add("bob", "java");
+        Content content = new Content("Kafka et Java", "", Collections.emptySet(), "pub");
+
+        index.remove("alice", "kafka");
+        assertEquals(Map.of("bob", Set.of("kafka", "java")), index.match(content));
+
+        index.removeSubscriber("bob");
+        assertEquals(Collections.emptyMap(), index.match(content));
+        assertEquals(0, index.getPhraseCount());
+    }
+
+    // L'ancienne vérification de ContentSubscriber, appliquée à chaque abonnement
+    private static Map<String, Set<String>> expectedMatches(Map<String, Set<String>> subscriptions, Content content) {
+        Map<String, Set<String>> expected = new HashMap<>();
+        for (Map.Entry<String, Set<String>> subscription : subscriptions.entrySet()) {
+            for (String keyword : subscription.getValue()) {
+                String[] parts = keyword.split("\\s+");
+                boolean matches = false;
+                for (String contentKeyword : content.getKeywords()) {
+                    if (matchesKeyword(contentKeyword.toLowerCase(), parts)) {
+                        matches = true;
+                        break;
+                    }
+                }
+                matches = matches || matchesKeyword(content.getTitle().toLowerCase(), parts)
+                        || matchesKeyword(content.getBody().toLowerCase(), parts);
+                if (matches) {
+                    expected.computeIfAbsent(subscription.getKey(), id -> new HashSet<>()).add(keyword);
+                }
+            }
+        }
+        return expected;
+    }
+
+    private static boolean matchesKeyword(String text, String[] keywordParts) {
+        for (String part : keywordParts) {
+            if (!text.contains(part.toLowerCase())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(random.nextInt(6) == 0 ? ", " : " ");
+            }
+            String word = random.nextInt(3) == 0 ? randomWord(random) : VOCABULARY[random.nextInt(VOCABULARY.length)];
+            text.append(random.nextInt(4) == 0 ? word.toUpperCase() : word);
+        }
+        return text.toString();
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[1 + random.nextInt(6)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = random.nextInt(8) == 0 ? "éèçà-.".charAt(random.nextInt(6)) : (char) ('a' + random.nextInt(6));
+        }
+        return new String(word);
+    }
+}
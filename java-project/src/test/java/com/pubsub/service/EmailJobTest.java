@@ -0,0 +1,41 @@
+package com.pubsub.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.pubsub.event.ContentEvent;
+import com.pubsub.model.Content;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailJobTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void keepsContentIdentityThroughTheEmailTopic() throws Exception {
+        Content content = new Content("Titre", "Corps", Set.of("kafka", "java"), "pub");
+
+        EmailJob job = objectMapper.readValue(
+                objectMapper.writeValueAsString(new EmailJob("alice@example.com", content, Set.of("kafka"))),
+                EmailJob.class);
+
+        assertEquals(ContentEvent.from(content), job.getContent());
+        assertEquals(content.getId(), job.getContent().toContent().getId());
+        assertEquals(content.getCreatedAt(), job.getContent().toContent().getCreatedAt());
+        assertEquals(Set.of("kafka"), job.getMatchedKeywords());
+    }
+
+    @Test
+    void readsJobsWrittenWithTheContentEntity() throws Exception {
+        Content content = new Content("Ancien format", "Corps", Set.of("json"), "bob");
+        // Job écrit par l'ancien producteur : l'entité Content sérialisée telle quelle
+        String legacy = "{\"recipient\":\"bob@example.com\",\"matchedKeywords\":[\"json\"],\"content\":"
+                + objectMapper.writeValueAsString(content) + "}";
+
+        EmailJob job = objectMapper.readValue(legacy, EmailJob.class);
+
+        assertEquals(ContentEvent.from(content), job.getContent());
+    }
+}
@@ -0,0 +1,71 @@
+package com.pubsub.service;
+
+import com.pubsub.model.Content;
+import com.pubsub.model.Notification;
+import com.pubsub.repository.ContentRepository;
+import com.pubsub.repository.NotificationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class NotificationStoreTest {
+
+    @Test
+    void badRowsDoNotHoldBackLaterNotifications() {
+        NotificationRepository repository = mock(NotificationRepository.class);
+        List<String> stored = new ArrayList<>();
+        when(repository.saveAll(anyList())).thenThrow(new DataAccessResourceFailureException("batch failed"));
+        when(repository.save(any())).thenAnswer(invocation -> {
+            Notification notification = invocation.getArgument(0);
+            if (notification.getSubscriberId().equals("duplicate")) {
+                throw new DataIntegrityViolationException("uk_notification_subscriber_content");
+            }
+            if (notification.getSubscriberId().equals("broken")) {
+                throw new DataAccessResourceFailureException("row failed");
+            }
+            stored.add(notification.getSubscriberId());
+            return notification;
+        });
+        NotificationStore store = new NotificationStore(repository, mock(ContentRepository.class), 10, 60000, 10);
+        try {
+            Content content = new Content("Titre", "Corps", Collections.singleton("kafka"), "pub");
+            store.enqueue("alice", content, Set.of("kafka"));
+            store.enqueue("duplicate", content, Set.of("kafka"));
+            store.enqueue("broken", content, Set.of("kafka"));
+            store.enqueue("bob", content, Set.of("kafka"));
+
+            store.flush();
+            assertEquals(List.of("alice", "bob"), stored);
+
+            // La ligne en échec est réessayée sans bloquer les suivantes, puis abandonnée
+            store.enqueue("carol", content, Set.of("kafka"));
+            store.flush();
+            store.flush();
+            store.flush();
+            assertEquals(List.of("alice", "bob", "carol"), stored);
+            verify(repository, times(3)).save(argThat(n -> n.getSubscriberId().equals("broken")));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void keepsKeywordsLongerThanAJoinedColumn() {
+        Set<String> keywords = new LinkedHashSet<>();
+        for (int i = 0; i < 20; i++) {
+            keywords.add("mot-clé, avec une virgule et assez long pour déborder " + i);
+        }
+
+        Notification notification = new Notification("alice", "content", keywords);
+
+        assertEquals(keywords, notification.getKeywords());
+    }
+}
@@ -0,0 +1,110 @@
+package com.pubsub.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class OutboundMailQueueTest {
+
+    @Test
+    void givesUpOnRuntimeErrorsAndKeepsSending() throws Exception {
+        SmtpTransportPool transport = mockTransport();
+        doThrow(new IllegalStateException("Not connected")).when(transport).send(any());
+        OutboundMailQueue queue = new OutboundMailQueue(transport, 2, 1, 1000, 100, 1000, 100, 3, 10, 100);
+        try {
+            // Plus de messages que de places et de threads : un thread mort bloquerait la suite
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                results.add(queue.submit(message("user" + i + "@example.com")));
+            }
+            for (CompletableFuture<Boolean> result : results) {
+                assertFalse(result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(5, queue.getFailedCount());
+            assertEquals(2, queue.getRemainingCapacity());
+
+            doNothing().when(transport).send(any());
+            assertTrue(queue.submit(message("ok@example.com")).get(5, TimeUnit.SECONDS));
+            assertEquals(1, queue.getSentCount());
+        } finally {
+            queue.close();
+        }
+    }
+
+    @Test
+    void sendsReadyMailsOfOneDomainAsABatch() throws Exception {
+        SmtpTransportPool transport = mockTransport();
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return null;
+        }).doNothing().when(transport).send(any());
+        OutboundMailQueue queue = new OutboundMailQueue(transport, 10, 1, 1000, 100, 1000, 100, 3, 10, 100);
+        try {
+            CompletableFuture<Boolean> first = queue.submit(message("first@example.com"));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            // Le seul thread d'envoi est occupé : ces messages attendent ensemble
+            List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(queue.submit(message("user" + i + "@example.com")));
+            }
+            results.add(queue.submit(message("other@example.org")));
+            release.countDown();
+
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            for (CompletableFuture<Boolean> result : results) {
+                assertTrue(result.get(5, TimeUnit.SECONDS));
+            }
+            verify(transport).sendBatch(argThat(messages -> messages.size() == 4));
+            verify(transport, times(1)).sendBatch(anyList());
+            assertEquals(6, queue.getSentCount());
+        } finally {
+            queue.close();
+        }
+    }
+
+    // Transport simulé : un lot passe par send() message par message
+    private static SmtpTransportPool mockTransport() throws MessagingException {
+        SmtpTransportPool transport = mock(SmtpTransportPool.class);
+        when(transport.sendBatch(anyList())).thenAnswer(invocation -> {
+            List<MimeMessage> messages = invocation.getArgument(0);
+            List<Exception> errors = new ArrayList<>();
+            for (MimeMessage message : messages) {
+                try {
+                    transport.send(message);
+                    errors.add(null);
+                } catch (MessagingException | RuntimeException e) {
+                    errors.add(e);
+                }
+            }
+            return errors;
+        });
+        return transport;
+    }
+
+    private static MimeMessage message(String recipient) throws MessagingException {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+        message.setSubject("Test");
+        message.setText("Corps");
+        return message;
+    }
+}
@@ -0,0 +1,234 @@
+package com.pubsub.util;
+
+import opennlp.tools.tokenize.SimpleTokenizer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Golden tests of {@link KeywordExtractor#extractKeywords} against the former
+ * regex, {@code HashMap} and OpenNLP pipeline, kept here as {@link ReferenceExtractor}.
+ */
+class KeywordExtractorTest {
+    private static final String[] WORDS = {
+            "kafka", "Kafka", "KAFKA", "streams", "java", "Java", "spring", "boot", "consumer", "producer",
+            "partition", "offset", "broker", "latence", "débit", "événement", "système", "données", "réseau",
+            "the", "and", "with", "les", "des", "pour", "dans", "très", "où", "être", "more", "new",
+            "covid-19", "e-mail", "2024", "v3", "x86_64", "C++", "node.js", "---", "--", "-", "a-b-c", "a1-b",
+            "\u0130stanbul", "\u212AELVIN", "Kelvin", "naïve", "café", "Straße", "ÆON", "ΣΟΦΟΣ", "中文", "🚀",
+            "it's", "l'article", "don't", "(test)", "[lien]", "\"citation\"", "fin.", "virgule,", "ok!",
+            "abc", "abcd", "xyz", "foo", "bar", "baz", "tab\tulation", "ligne\nsuivante"
+    };
+
+    private static KeywordExtractor extractor;
+    private static KeywordExtractor cached;
+    private static ReferenceExtractor reference;
+
+    @BeforeAll
+    static void setUp() {
+        extractor = new KeywordExtractor();
+        extractor.init();
+        cached = new KeywordExtractor(true, 10000, 0, 0, null);
+        cached.init();
+        @SuppressWarnings("unchecked")
+        Set<String> stopWords = (Set<String>) ReflectionTestUtils.getField(KeywordExtractor.class, "STOP_WORDS");
+        reference = new ReferenceExtractor(stopWords);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        extractor.close();
+        cached.close();
+    }
+
+    @Test
+    void matchesReferenceOnEdgeCases() {
+        assertMatchesReference("", "");
+        assertMatchesReference("   ", "\t\n");
+        assertMatchesReference("the and", "de la le");
+        assertMatchesReference("a1-b abc1-def2 covid-19 x86_64", "a1-b---c 2024-2025 v3.2 node.js C++");
+        assertMatchesReference("\u0130\u0130\u0130 \u0130stanbul", "\u212A\u212A\u212A \ufb01ne \u01c5emal Kelvin");
+        assertMatchesReference("supercalifragilisticexpialidocious-supercalifragilisticexpialidocious", "ok");
+    }
+
+    @Test
+    void ranksTiesLikeReference() {
+        // Plus de termes à égalité que de mots-clés retenus : l'ordre du HashMap départage
+        assertMatchesReference("alpha beta gamma delta epsilon zeta eta theta", "iota kappa lambda omicron");
+        assertMatchesReference("", "one two six ten abc bcd cde def efg fgh ghi hij ijk");
+        assertMatchesReference("kafka java", "java kafka spring boot streams broker offset");
+    }
+
+    @Test
+    void fallsBackToTokenizerOnCollisions() {
+        Random random = new Random(7);
+        String title = "Collisions";
+        String body = sameBucketWords(random, 40) + body(random, 100);
+
+        assertTrue(KeywordExtractor.countTerms(title, body).hasCollisions());
+        assertMatchesReference(title, body);
+        assertMatchesReference("Collisions", sameBucketWords(random, 12));
+    }
+
+    @Test
+    void matchesReferenceOnGoldenCorpus() {
+        Random random = new Random(42);
+        for (int i = 0; i < 3000; i++) {
+            assertMatchesReference(sentence(random, 1 + random.nextInt(10)), body(random, random.nextInt(300)));
+        }
+    }
+
+    @Test
+    void cachedExtractionMatchesReference() {
+        Random random = new Random(43);
+        List<String[]> corpus = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            corpus.add(new String[]{sentence(random, 1 + random.nextInt(10)), body(random, random.nextInt(200))});
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            for (String[] document : corpus) {
+                assertEquals(reference.extractKeywords(document[0], document[1]),
+                        cached.extractKeywords(document[0], document[1]), document[0]);
+            }
+        }
+        assertTrue(cached.getCacheHits() >= corpus.size());
+    }
+
+    @Test
+    void batchKeepsDocumentOrder() {
+        Random random = new Random(44);
+        List<KeywordExtractor.Document> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            batch.add(new KeywordExtractor.Document(sentence(random, 5), body(random, random.nextInt(100))));
+        }
+        batch.add(null);
+
+        List<Set<String>> results = extractor.extractKeywordsBatch(batch);
+
+        assertEquals(batch.size(), results.size());
+        for (int i = 0; i < batch.size() - 1; i++) {
+            assertEquals(reference.extractKeywords(batch.get(i).getTitle(), batch.get(i).getBody()), results.get(i));
+        }
+        assertEquals(Collections.emptySet(), results.get(batch.size() - 1));
+    }
+
+    @Test
+    void createsBatchPoolOnlyWhenNeeded() {
+        KeywordExtractor lazy = new KeywordExtractor(false, 0, 0, 2, null);
+        List<KeywordExtractor.Document> small = Collections.nCopies(3, new KeywordExtractor.Document("kafka", "java"));
+        List<KeywordExtractor.Document> large = Collections.nCopies(100, new KeywordExtractor.Document("kafka", "java"));
+
+        lazy.extractKeywordsBatch(small);
+        assertNull(ReflectionTestUtils.getField(lazy, "batchPool"));
+        lazy.extractKeywordsBatch(large);
+        assertNotNull(ReflectionTestUtils.getField(lazy, "batchPool"));
+
+        lazy.close();
+        assertNull(ReflectionTestUtils.getField(lazy, "batchPool"));
+        // Après fermeture, les lots passent par le thread appelant
+        assertEquals(large.size(), lazy.extractKeywordsBatch(large).size());
+        assertNull(ReflectionTestUtils.getField(lazy, "batchPool"));
+    }
+
+    private static void assertMatchesReference(String title, String body) {
+        Set<String> expected = reference.extractKeywords(title, body);
+        Set<String> actual = extractor.extractKeywords(title, body);
+        assertEquals(expected, actual, () -> "title '" + title + "'");
+        // Même ordre d'itération que l'ensemble produit par l'ancien pipeline
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual), () -> "order for title '" + title + "'");
+    }
+
+    // Mots qui tombent dans le même compartiment du HashMap jusqu'à 64 cases : il passe en arbre
+    private static String sameBucketWords(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int found = 0; found < count; ) {
+            char[] word = new char[3 + random.nextInt(6)];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = (char) ('a' + random.nextInt(26));
+            }
+            int hash = new String(word).hashCode();
+            if (((hash ^ (hash >>> 16)) & 63) == 0) {
+                words.append(word).append(' ');
+                found++;
+            }
+        }
+        return words.toString();
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(random.nextInt(8) == 0 ? ", " : " ");
+            }
+            sentence.append(random.nextInt(4) == 0 ? randomWord(random) : WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    private static String body(Random random, int words) {
+        StringBuilder body = new StringBuilder();
+        while (words > 0) {
+            int length = Math.min(words, 1 + random.nextInt(15));
+            body.append(sentence(random, length)).append(random.nextBoolean() ? ". " : ".\n");
+            words -= length;
+        }
+        return body.toString();
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[1 + random.nextInt(9)];
+        for (int i = 0; i < word.length; i++) {
+            int kind = random.nextInt(20);
+            word[i] = kind < 14 ? (char) ('a' + random.nextInt(26))
+                    : kind < 16 ? (char) ('A' + random.nextInt(26))
+                    : kind < 18 ? (char) ('0' + random.nextInt(10))
+                    : kind < 19 ? '-' : (char) (0xC0 + random.nextInt(0x40));
+        }
+        return new String(word);
+    }
+
+    /**
+     * The former implementation of {@link KeywordExtractor#extractKeywords}.
+     */
+    private static final class ReferenceExtractor {
+        private static final Pattern CLEANUP_PATTERN = Pattern.compile("[^a-zA-Z0-9\\s-]");
+        private final Set<String> stopWords;
+
+        private ReferenceExtractor(Set<String> stopWords) {
+            this.stopWords = stopWords;
+        }
+
+        Set<String> extractKeywords(String title, String content) {
+            Map<String, Double> weightedFreq = new HashMap<>();
+            processText(cleanText(title), weightedFreq, 2.0f);
+            processText(cleanText(content), weightedFreq, 1.0f);
+            return weightedFreq.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                    .limit(5)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+        }
+
+        private String cleanText(String text) {
+            return CLEANUP_PATTERN.matcher(text.toLowerCase().trim())
+                    .replaceAll(" ")
+                    .replaceAll("\\s+", " ");
+        }
+
+        private void processText(String text, Map<String, Double> weightedFreq, float weight) {
+            for (String token : SimpleTokenizer.INSTANCE.tokenize(text)) {
+                if (token.length() >= 3 && token.length() <= 50 && !stopWords.contains(token)) {
+                    weightedFreq.merge(token, (double) weight, Double::sum);
+                }
+            }
+        }
+    }
+}